@@ -0,0 +1,153 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Walks the search tree on its own thread and hands every regular, non-hidden
+ * file to the scanner through a bounded queue. Scanning starts while the walk
+ * is still running, the full path list is never held in memory, and a slow
+ * scanner simply makes the walker wait.
+ *
+ * Each entry is only stat'ed once, by Files.walkFileTree: the type and hidden
+ * flag come from the BasicFileAttributes it already read.
+ */
+final class FileDiscovery implements Runnable {
+
+    /** Put on the queue after the last file, once the walk is over or stopped. */
+    static final Path END = Paths.get("");
+
+    private final Path root;
+    private final BlockingQueue<Path> queue;
+    private final AtomicLong discovered = new AtomicLong(0);
+    private final AtomicLong discoveredBytes = new AtomicLong(0);
+    private volatile boolean complete = false;
+    private volatile boolean stopped = false;
+    private volatile IOException failure;
+
+    FileDiscovery(Path root, int capacity) {
+        this.root = root;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /** Starts the walk on a daemon thread. */
+    void start() {
+        Thread walker = new Thread(this, "file-discovery");
+        walker.setDaemon(true);
+        walker.start();
+    }
+
+    /** Next discovered file, or {@link #END}. Blocks until one is available. */
+    Path take() throws InterruptedException {
+        return queue.take();
+    }
+
+    /** Next discovered file, {@link #END}, or null if none arrived in time. */
+    Path poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /** Stops the walk early (cancel); the walker thread then exits on its own. */
+    void stop() {
+        stopped = true;
+    }
+
+    long getDiscovered() {
+        return discovered.get();
+    }
+
+    /** Total size of the files discovered so far. */
+    long getDiscoveredBytes() {
+        return discoveredBytes.get();
+    }
+
+    /** True once every file has been discovered. */
+    boolean isComplete() {
+        return complete;
+    }
+
+    /** The error that ended the walk early, if any. */
+    IOException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public void run() {
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (stopped)
+                        return FileVisitResult.TERMINATE;
+                    // Skip hidden directories (like .git)
+                    if (!dir.equals(root) && isHidden(dir, attrs))
+                        return FileVisitResult.SKIP_SUBTREE;
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !isHidden(file, attrs)) {
+                        discovered.incrementAndGet();
+                        discoveredBytes.addAndGet(attrs.size());
+                        if (!enqueue(file))
+                            return FileVisitResult.TERMINATE;
+                    }
+                    return stopped ? FileVisitResult.TERMINATE : FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // One unreadable entry should not end the whole search
+                    System.err.println("Cannot access " + file + ": " + exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            complete = true;
+            if (!enqueue(END)) {
+                // Stopped: nobody is waiting for the rest, so don't block for room
+                queue.offer(END);
+            }
+        }
+    }
+
+    /** Blocks while the queue is full; returns false if the walk was stopped meanwhile. */
+    private boolean enqueue(Path file) {
+        try {
+            while (!queue.offer(file, 100, TimeUnit.MILLISECONDS)) {
+                if (stopped)
+                    return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stopped = true;
+            return false;
+        }
+    }
+
+    /**
+     * Hidden check without another stat: Windows walks already hand us
+     * DosFileAttributes; elsewhere hidden means a leading dot.
+     */
+    private static boolean isHidden(Path path, BasicFileAttributes attrs) {
+        if (attrs instanceof DosFileAttributes) {
+            return ((DosFileAttributes) attrs).isHidden();
+        }
+        Path name = path.getFileName();
+        return name != null && name.toString().startsWith(".");
+    }
+}
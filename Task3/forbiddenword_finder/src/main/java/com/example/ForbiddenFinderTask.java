@@ -9,8 +9,6 @@ import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.regex.Pattern;
-import java.util.stream.Stream;
 
 // Task now returns a list of ReportEntry objects for the TableView
 public class ForbiddenFinderTask extends Task<ObservableList<ReportEntry>> {
@@ -20,8 +18,12 @@ public class ForbiddenFinderTask extends Task<ObservableList<ReportEntry>> {
     private final Path outputDirectory;
     private final AtomicLong filesProcessed = new AtomicLong(0);
 
-    // Store ReportEntry objects
+    // Store ReportEntry objects. reportEntries is bound to the table and only changed on the
+    // FX thread (through updates); foundEntries is what the report is written from.
     private final ObservableList<ReportEntry> reportEntries = FXCollections.observableArrayList();
+    private final List<ReportEntry> foundEntries = new ArrayList<>();
+    // Rows and progress reach the UI a frame at a time, not once per file
+    private UiUpdateChannel<ReportEntry> updates;
     private final ConcurrentHashMap<String, AtomicLong> wordCounts = new ConcurrentHashMap<>();
 
     // Synchronization control for Pause/Resume
@@ -29,6 +31,12 @@ public class ForbiddenFinderTask extends Task<ObservableList<ReportEntry>> {
     private volatile boolean isPaused = false;
     private final String searchDirectoryString; // Store the root path once for the report
 
+    // How far the directory walk may run ahead of the search
+    private static final int DISCOVERY_QUEUE_CAPACITY = 1024;
+
+    // Compiled once per scan from forbiddenWords
+    private WordMatcher matcher;
+
     public ForbiddenFinderTask(
             Path startDirectory,
             Set<String> forbiddenWords,
@@ -43,6 +51,9 @@ public class ForbiddenFinderTask extends Task<ObservableList<ReportEntry>> {
 
     public void pauseExecution() {
         isPaused = true;
+        if (updates != null) {
+            updates.holdMessages(true);
+        }
         this.updateMessage("Paused...");
     }
 
@@ -51,6 +62,9 @@ public class ForbiddenFinderTask extends Task<ObservableList<ReportEntry>> {
         synchronized (pauseLock) {
             pauseLock.notifyAll();
         }
+        if (updates != null) {
+            updates.holdMessages(false);
+        }
         this.updateMessage("Searching...");
     }
 
@@ -67,25 +81,41 @@ public class ForbiddenFinderTask extends Task<ObservableList<ReportEntry>> {
 
         Files.createDirectories(outputDirectory);
         reportEntries.clear(); // Ensure list is clean for a new run
+        foundEntries.clear();
+        matcher = new WordMatcher(forbiddenWords);
+        // Set -Dforbiddenfinder.debug=true to print every file found (once per frame, off the search thread)
+        updates = new UiUpdateChannel<>(reportEntries, this::updateProgress, this::updateMessage,
+                entry -> entry.getFileDirectory() + File.separator + entry.getFileName()
+                        + " (" + entry.getForbiddenWordCount() + ")",
+                Boolean.getBoolean("forbiddenfinder.debug"));
+
+        // 2. List down all files (Your Step 1), streamed while the search runs
+        FileDiscovery discovery = new FileDiscovery(startDirectory, DISCOVERY_QUEUE_CAPACITY);
+        discovery.start();
+        this.updateMessage("Starting search in: " + startDirectory.getFileName());
+
+        // 3. Start search (Your Step 2: run thread to search)
+        updates.start();
+        try {
+            processDiscoveredFiles(discovery);
+        } finally {
+            discovery.stop();
+            updates.close(); // Last rows and progress, before the final message
+        }
+        if (discovery.getFailure() != null) {
+            throw discovery.getFailure();
+        }
 
-        // 2. Calculate total files (Your Step 1: list down all files)
-        long totalFiles = calculateTotalFiles(startDirectory);
-        if (totalFiles == 0) {
+        if (!isCancelled() && filesProcessed.get() == 0) {
             this.updateMessage("Directory is empty or contains no files to process.");
             return FXCollections.emptyObservableList();
         }
 
-        this.updateProgress(0, totalFiles);
-        this.updateMessage("Starting search in: " + startDirectory.getFileName());
-
-        // 3. Start search (Your Step 2: run thread to search)
-        processDirectory(startDirectory, totalFiles);
-
         // 4. Final Steps
         if (!isCancelled()) {
             generateReport(); // Report generation still writes to file
             this.updateMessage(String.format("Search complete. %d files found with forbidden words. Report saved.",
-                    reportEntries.size()));
+                    foundEntries.size()));
         } else {
             this.updateMessage("Search was cancelled.");
         }
@@ -94,111 +124,104 @@ public class ForbiddenFinderTask extends Task<ObservableList<ReportEntry>> {
         return reportEntries;
     }
 
-    private void processDirectory(Path currentDir, long totalFiles) throws IOException, InterruptedException {
-        try (DirectoryStream<Path> stream = Files.newDirectoryStream(currentDir)) {
-            for (Path entry : stream) {
-                if (isCancelled()) {
-                    return;
-                }
-                System.out.println(currentDir);
-                System.out.println(entry);
-                checkPauseState();
-
-                if (Files.isDirectory(entry)) {
-                    // Skip hidden directories (like .git)
-                    if (!Files.isHidden(entry)) {
-                        processDirectory(entry, totalFiles);
-                    }
-                } else if (Files.isRegularFile(entry)) {
-                    processFile(entry);
+    private void processDiscoveredFiles(FileDiscovery discovery) throws InterruptedException {
+        while (true) {
+            if (isCancelled()) {
+                return;
+            }
+            checkPauseState();
 
-                    filesProcessed.incrementAndGet();
-                    this.updateProgress(filesProcessed.get(), totalFiles);
-                    this.updateMessage(String.format("Processing: %s (File %d of %d)",
-                            entry.getFileName(), filesProcessed.get(), totalFiles));
-                }
+            Path file = discovery.take();
+            if (file == FileDiscovery.END) {
+                return;
             }
+            processFile(file);
+
+            // Progress is "processed vs discovered" until the walk is complete; shown once per frame
+            filesProcessed.incrementAndGet();
+            updates.discovered(discovery.getDiscovered(), discovery.getDiscoveredBytes(), discovery.isComplete());
         }
     }
 
     private void processFile(Path filePath) {
         long replacementsCount = 0;
-        StringBuilder replacementContent = new StringBuilder();
-        boolean foundForbiddenWord = false; // Controls whether the file is put in the report
-
-        try (BufferedReader reader = Files.newBufferedReader(filePath)) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String currentLine = line;
-                long lineReplacements = 0;
-
-                for (String word : forbiddenWords) {
-                    System.out.println(word);
-                    // Define the pattern for whole word, case-insensitive match
-                    Pattern pattern = Pattern.compile("\\b" + Pattern.quote(word) + "\\b", Pattern.CASE_INSENSITIVE);
-                    java.util.regex.Matcher matcher = pattern.matcher(currentLine);
-
-                    long count = 0;
-                    // Step 2: ACCURATE COUNTING using matcher.find()
-                    while (matcher.find()) {
-                        count++;
-                    }
-
-                    if (count > 0) {
-                        foundForbiddenWord = true;
-
-                        // Step 3: Perform replacement on the current line
-                        matcher.reset(currentLine); // Reset matcher to perform replacement from the start
-                        String replacedLine = matcher.replaceAll("*******");
-
-                        // Update the line and accumulated counts
-                        currentLine = replacedLine;
-                        lineReplacements += count;
-
-                        // Update the overall word statistics (ConcurrentHashMap)
-                        wordCounts.computeIfAbsent(word, k -> new AtomicLong(0)).addAndGet(count);
-                    }
+        long[] hits = new long[matcher.size()];
+        Path tempFile = null;
+        long fileSize = 0;
+
+        try {
+            fileSize = Files.size(filePath);
+
+            // The masked text is streamed to a temp file, one line at a time
+            tempFile = Files.createTempFile(outputDirectory, ".replaced-", ".tmp");
+            try (BufferedReader reader = Files.newBufferedReader(filePath);
+                    BufferedWriter writer = Files.newBufferedWriter(tempFile)) {
+                StringBuilder maskedLine = new StringBuilder();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // Step 2 + 3: count, attribute and mask every forbidden word in one pass
+                    maskedLine.setLength(0);
+                    replacementsCount += matcher.maskLine(line, maskedLine, hits);
+                    writer.append(maskedLine).append(System.lineSeparator());
                 }
-
-                // Accumulate total replacements for the ReportEntry
-                replacementsCount += lineReplacements;
-                replacementContent.append(currentLine).append(System.lineSeparator());
             }
 
             // Your instruction: if found -> put in report
-            if (foundForbiddenWord) {
-                // 1. Copy the original file
+            if (replacementsCount > 0) {
+                // 1. Move the replacement file into place (atomically, never half-written)
+                String replacementFileName = filePath.getFileName().toString() + ".replaced";
+                Path replacedFile = outputDirectory.resolve(replacementFileName);
+                try {
+                    Files.move(tempFile, replacedFile, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(tempFile, replacedFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+
+                // 2. Copy the original file
                 Path copiedFile = outputDirectory.resolve(filePath.getFileName().toString());
                 Files.copy(filePath, copiedFile, StandardCopyOption.REPLACE_EXISTING);
 
-                // 2. Write the replacement file
-                String replacementFileName = filePath.getFileName().toString() + ".replaced";
-                Path replacedFile = outputDirectory.resolve(replacementFileName);
-                Files.write(replacedFile, replacementContent.toString().getBytes());
+                // 3. Update the overall word statistics (ConcurrentHashMap)
+                for (int id = 0; id < hits.length; id++) {
+                    if (hits[id] > 0) {
+                        wordCounts.computeIfAbsent(matcher.word(id), k -> new AtomicLong(0)).addAndGet(hits[id]);
+                    }
+                }
 
-                // 3. Add to report entries (ReportEntry object)
+                // 4. Add to report entries (ReportEntry object)
                 ReportEntry entry = new ReportEntry(
                         filePath.getFileName().toString(),
                         (int) replacementsCount,
                         filePath.getParent().toAbsolutePath().toString(),
                         searchDirectoryString);
-                // ReportEntry is added to the ObservableList
-                reportEntries.add(entry);
+                // Kept for the report; the table gets it with the next frame
+                foundEntries.add(entry);
+                updates.addRow(entry);
             }
             // Your instruction: if no found -> ignore that file
-            // If foundForbiddenWord is false, the function simply finishes without adding
+            // If nothing matched, the function simply finishes without adding
             // to reportEntries.
 
         } catch (IOException e) {
             System.err.println("Error processing file " + filePath + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            // One bad file never takes the whole task down with it
+            System.err.println("Error processing file " + filePath + ": " + e);
+        } finally {
+            // Still there if nothing matched or the file failed
+            deleteQuietly(tempFile);
+            updates.fileDone(filePath.getFileName().toString(), fileSize);
         }
     }
 
-    private long calculateTotalFiles(Path start) throws IOException {
-        // Your Step 1: list down all file store in list (and count them)
-        try (Stream<Path> stream = Files.walk(start)) {
-            // Filter to only count regular, non-hidden files
-            return stream.filter(p -> Files.isRegularFile(p) && !p.toFile().isHidden()).count();
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete temp file " + file + ": " + e.getMessage());
         }
     }
 
@@ -222,10 +245,10 @@ public class ForbiddenFinderTask extends Task<ObservableList<ReportEntry>> {
             // Found Files and Replacements
             writer.write("\n\nFound Files Containing Forbidden Words:");
             writer.newLine();
-            if (reportEntries.isEmpty()) {
+            if (foundEntries.isEmpty()) {
                 writer.write("None found.");
             } else {
-                for (ReportEntry entry : reportEntries) {
+                for (ReportEntry entry : foundEntries) {
                     writer.write(String.format("File: %s | Replacements: %d | Path: %s",
                             entry.getFileName(), entry.getForbiddenWordCount(), entry.getFileDirectory()));
                     writer.newLine();
@@ -0,0 +1,204 @@
+package com.example;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Coalesces what the workers report and hands it to the UI at a fixed frame
+ * rate. New rows reach the table in one addAll per frame, and progress (files,
+ * bytes, throughput and ETA) is one updateProgress / updateMessage per frame,
+ * however many files finish in between. Workers only touch a concurrent queue
+ * and adders, so 100k files a second cost the FX thread ten updates.
+ */
+final class UiUpdateChannel<T> {
+
+    static final long FRAME_MILLIS = 100; // 10 frames per second
+
+    /** Receives the progress of a frame (Task.updateProgress). */
+    interface ProgressSink {
+        void update(long done, long total);
+    }
+
+    private final ObservableList<T> rows;
+    private final ProgressSink progress;
+    private final Consumer<String> message;
+    private final Function<T, String> describe; // one debug log line per row
+    private final boolean debugLog;
+
+    private final ConcurrentLinkedQueue<T> addedRows = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<T> removedRows = new ConcurrentLinkedQueue<>();
+    private final LongAdder filesDone = new LongAdder();
+    private final LongAdder bytesDone = new LongAdder();
+    private volatile long filesDiscovered;
+    private volatile long bytesDiscovered;
+    private volatile boolean walkComplete;
+    private volatile String lastFile = "N/A";
+    private volatile String detail;
+    private volatile boolean messagesHeld;
+
+    private long startNanos;
+    private ScheduledExecutorService ticker;
+
+    UiUpdateChannel(ObservableList<T> rows, ProgressSink progress, Consumer<String> message,
+            Function<T, String> describe, boolean debugLog) {
+        this.rows = rows;
+        this.progress = progress;
+        this.message = message;
+        this.describe = describe;
+        this.debugLog = debugLog;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ui-updates");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::flush, FRAME_MILLIS, FRAME_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the frames and flushes what is left. Progress messages stop here,
+     * so the caller's final message is not overwritten; closing twice is harmless.
+     */
+    void close() {
+        if (ticker == null)
+            return;
+
+        ticker.shutdownNow();
+        try {
+            ticker.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            // Cancelled: still flush below, the interrupt stays set
+            Thread.currentThread().interrupt();
+        }
+        ticker = null;
+        flush();
+    }
+
+    // --- Called from any thread ---
+
+    void addRow(T row) {
+        addedRows.add(row);
+    }
+
+    void removeRow(T row) {
+        removedRows.add(row);
+    }
+
+    void fileDone(String fileName, long bytes) {
+        filesDone.increment();
+        bytesDone.add(bytes);
+        lastFile = fileName;
+    }
+
+    /** Totals found by the walk so far. */
+    void discovered(long files, long bytes, boolean complete) {
+        filesDiscovered = files;
+        bytesDiscovered = bytes;
+        walkComplete = complete;
+    }
+
+    /** Engine-specific text appended to the progress message (null for none). */
+    void setDetail(String detail) {
+        this.detail = detail;
+    }
+
+    /** While held, progress is not published (e.g. so "Paused..." stays on screen); rows still are. */
+    void holdMessages(boolean held) {
+        this.messagesHeld = held;
+    }
+
+    long getBytesDone() {
+        return bytesDone.sum();
+    }
+
+    // --- Frame ---
+
+    private void flush() {
+        try {
+            flushRows();
+            if (!messagesHeld) {
+                flushProgress();
+            }
+        } catch (RuntimeException e) {
+            // A failed frame must not end the ticker
+            System.err.println("UI update failed: " + e);
+        }
+    }
+
+    private void flushRows() {
+        List<T> added = drain(addedRows);
+        Set<T> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        removed.addAll(drain(removedRows));
+        if (added.isEmpty() && removed.isEmpty())
+            return;
+
+        if (debugLog && !added.isEmpty()) {
+            // One write per frame, off the worker threads
+            StringBuilder log = new StringBuilder();
+            for (T row : added) {
+                log.append("Found: ").append(describe.apply(row)).append(System.lineSeparator());
+            }
+            System.out.print(log);
+        }
+
+        // Rows are always distinct objects, so adding before removing is safe within a frame
+        Platform.runLater(() -> {
+            rows.addAll(added);
+            rows.removeAll(removed);
+        });
+    }
+
+    private void flushProgress() {
+        long files = filesDone.sum();
+        long bytes = bytesDone.sum();
+        long totalFiles = Math.max(files, filesDiscovered);
+        progress.update(files, totalFiles);
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double bytesPerSecond = seconds > 0 ? bytes / seconds : 0;
+        String eta = "--";
+        if (walkComplete && bytesPerSecond > 0) {
+            long remaining = (long) (Math.max(0, bytesDiscovered - bytes) / bytesPerSecond);
+            eta = String.format("%d:%02d", remaining / 60, remaining % 60);
+        }
+
+        String text = String.format("Processed: %s (File %d of %d%s) | %s of %s, %s/s, ETA %s",
+                lastFile, files, totalFiles, walkComplete ? "" : " discovered so far",
+                formatSize(bytes), formatSize(bytesDiscovered),
+                formatSize((long) bytesPerSecond), eta);
+        String extra = detail;
+        message.accept(extra == null ? text : text + " | " + extra);
+    }
+
+    private static String formatSize(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        int exp = (int) (Math.log(bytes) / Math.log(1024));
+        String pre = "KMGTPE".charAt(exp - 1) + "";
+        return String.format("%.1f %sB", bytes / Math.pow(1024, exp), pre);
+    }
+
+    private static <T> List<T> drain(ConcurrentLinkedQueue<T> queue) {
+        List<T> drained = new ArrayList<>();
+        T item;
+        while ((item = queue.poll()) != null) {
+            drained.add(item);
+        }
+        return drained;
+    }
+}
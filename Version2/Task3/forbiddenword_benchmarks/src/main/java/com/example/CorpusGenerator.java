@@ -0,0 +1,198 @@
+package com.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Builds a synthetic search tree for {@link MacroBenchmark}: {@code <dir>/tree}
+ * with the files, and {@code <dir>/words.txt} with the forbidden words. The
+ * same options and seed always give the same tree.
+ *
+ * Usage: {@code java -cp benchmarks.jar com.example.CorpusGenerator <dir> [--depth 3]
+ * [--fan-out 4] [--files-per-dir 25] [--median-size 8192] [--size-spread 1.0]
+ * [--max-size 4194304] [--duplicate-ratio 0.1] [--binary-ratio 0.05]
+ * [--word-density 0.01] [--words foo,bar,...] [--seed 42]}
+ *
+ * File sizes are log-normal around the median ({@code --size-spread} is the
+ * sigma). A duplicate is a byte copy of an earlier text file; a binary file
+ * is random bytes with NULs in them.
+ */
+public final class CorpusGenerator {
+
+    static final String TREE = "tree";
+    static final String WORDS_FILE = "words.txt";
+    private static final int FILLER_WORDS = 2000;
+    private static final int DUPLICATE_SOURCES = 1000; // text files kept as candidates for copies
+
+    // Shape of the tree
+    private int depth = 3;
+    private int fanOut = 4;
+    private int filesPerDirectory = 25;
+    // Files
+    private long medianSize = 8 * 1024;
+    private double sizeSpread = 1.0;
+    private long maxSize = 4L * 1024 * 1024;
+    private double duplicateRatio = 0.1;
+    private double binaryRatio = 0.05;
+    private double wordDensity = 0.01;
+    private List<String> forbiddenWords = List.of("foo", "bar", "secret", "password", "confidential");
+    private long seed = 42;
+
+    private Random random;
+    private List<String> fillers;
+    private final List<Path> textFiles = new ArrayList<>();
+    private long files = 0;
+    private long bytes = 0;
+    private long duplicates = 0;
+    private long binaries = 0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length % 2 == 0) {
+            System.err.println("Usage: CorpusGenerator <dir> [--depth n] [--fan-out n] [--files-per-dir n]"
+                    + " [--median-size bytes] [--size-spread sigma] [--max-size bytes] [--duplicate-ratio r]"
+                    + " [--binary-ratio r] [--word-density r] [--words a,b,...] [--seed n]");
+            System.exit(2);
+        }
+        CorpusGenerator generator = new CorpusGenerator();
+        for (int i = 1; i < args.length; i += 2) {
+            generator.set(args[i], args[i + 1]);
+        }
+        generator.generate(Paths.get(args[0]));
+    }
+
+    private void set(String option, String value) {
+        switch (option) {
+            case "--depth" -> depth = Integer.parseInt(value);
+            case "--fan-out" -> fanOut = Integer.parseInt(value);
+            case "--files-per-dir" -> filesPerDirectory = Integer.parseInt(value);
+            case "--median-size" -> medianSize = Long.parseLong(value);
+            case "--size-spread" -> sizeSpread = Double.parseDouble(value);
+            case "--max-size" -> maxSize = Long.parseLong(value);
+            case "--duplicate-ratio" -> duplicateRatio = Double.parseDouble(value);
+            case "--binary-ratio" -> binaryRatio = Double.parseDouble(value);
+            case "--word-density" -> wordDensity = Double.parseDouble(value);
+            case "--words" -> forbiddenWords = Arrays.asList(value.split(","));
+            case "--seed" -> seed = Long.parseLong(value);
+            default -> throw new IllegalArgumentException("Unknown option: " + option);
+        }
+    }
+
+    /** Writes the tree and the word list under {@code corpusDirectory}. */
+    void generate(Path corpusDirectory) throws IOException {
+        Path tree = corpusDirectory.resolve(TREE);
+        if (Files.exists(tree)) {
+            throw new IOException("Already exists: " + tree);
+        }
+        random = new Random(seed);
+        Set<String> taken = new HashSet<>();
+        for (String word : forbiddenWords) {
+            taken.add(word.toLowerCase());
+        }
+        fillers = new ArrayList<>(FILLER_WORDS);
+        while (fillers.size() < FILLER_WORDS) {
+            String filler = MatcherCorpus.randomWord(random, 2, 10);
+            if (taken.add(filler)) {
+                fillers.add(filler);
+            }
+        }
+
+        Files.createDirectories(tree);
+        Files.write(corpusDirectory.resolve(WORDS_FILE), forbiddenWords, StandardCharsets.UTF_8);
+        generateDirectory(tree, 0);
+
+        System.out.printf("Generated %d files (%s) in %s: %d duplicates, %d binary%n",
+                files, ReportEntry.formatSize(bytes), tree, duplicates, binaries);
+    }
+
+    private void generateDirectory(Path directory, int level) throws IOException {
+        for (int i = 0; i < filesPerDirectory; i++) {
+            double kind = random.nextDouble();
+            // Names are unique in the whole tree: the output directory is flat
+            String name = "file" + files;
+            if (kind < duplicateRatio && !textFiles.isEmpty()) {
+                Path source = textFiles.get(random.nextInt(textFiles.size()));
+                Path copy = directory.resolve(name + ".txt");
+                Files.copy(source, copy, StandardCopyOption.COPY_ATTRIBUTES);
+                count(copy);
+                duplicates++;
+            } else if (kind < duplicateRatio + binaryRatio) {
+                Path binary = directory.resolve(name + ".bin");
+                writeBinary(binary, nextSize());
+                count(binary);
+                binaries++;
+            } else {
+                Path text = directory.resolve(name + ".txt");
+                writeText(text, nextSize());
+                count(text);
+                if (textFiles.size() < DUPLICATE_SOURCES) {
+                    textFiles.add(text);
+                } else {
+                    textFiles.set(random.nextInt(DUPLICATE_SOURCES), text);
+                }
+            }
+        }
+
+        if (level < depth) {
+            for (int i = 0; i < fanOut; i++) {
+                Path subdirectory = directory.resolve("dir" + i);
+                Files.createDirectory(subdirectory);
+                generateDirectory(subdirectory, level + 1);
+            }
+        }
+    }
+
+    /** Log-normal around the median, at least 1 byte and at most maxSize. */
+    private long nextSize() {
+        long size = Math.round(medianSize * Math.exp(sizeSpread * random.nextGaussian()));
+        return Math.max(1, Math.min(maxSize, size));
+    }
+
+    /** Lines of 40 to 120 characters; each word is forbidden with probability wordDensity. */
+    private void writeText(Path file, long size) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(128);
+            long written = 0;
+            while (written < size) {
+                line.setLength(0);
+                int lineLength = 40 + random.nextInt(81);
+                while (line.length() < lineLength) {
+                    if (line.length() > 0) {
+                        line.append(random.nextInt(10) == 0 ? ". " : " ");
+                    }
+                    if (random.nextDouble() < wordDensity) {
+                        String word = forbiddenWords.get(random.nextInt(forbiddenWords.size()));
+                        line.append(random.nextInt(4) == 0 ? word.toUpperCase() : word);
+                    } else {
+                        line.append(fillers.get(random.nextInt(fillers.size())));
+                    }
+                }
+                line.append('\n');
+                writer.append(line);
+                written += line.length();
+            }
+        }
+    }
+
+    private void writeBinary(Path file, long size) throws IOException {
+        byte[] content = new byte[(int) Math.min(size, Integer.MAX_VALUE - 8)];
+        random.nextBytes(content);
+        content[0] = 0; // a NUL early on, as most binary formats have
+        Files.write(file, content);
+    }
+
+    private void count(Path file) throws IOException {
+        files++;
+        bytes += Files.size(file);
+    }
+}
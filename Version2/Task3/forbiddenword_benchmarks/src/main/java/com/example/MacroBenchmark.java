@@ -0,0 +1,252 @@
+package com.example;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Whole-tree scans of a {@link CorpusGenerator} corpus with every engine:
+ * Version1's sequential task and each Version2 {@link ScanEngine}. Every run
+ * is a separate JVM ({@link ScanProbe}) writing to a fresh output directory;
+ * the median run of each engine is reported as files/s, MB/s, peak RSS and
+ * GC time.
+ *
+ * Usage: {@code java -cp benchmarks.jar com.example.MacroBenchmark <corpus dir>
+ * [--runs 3] [--engines VERSION1,FIXED_POOL,...] [--version1-classes dir]
+ * [--baseline file] [--save-baseline file] [--threshold 0.10]}
+ *
+ * Version1 runs only with {@code --version1-classes} (its target/classes).
+ * With a baseline, the run fails (exit code 1) when an engine's files/s drops,
+ * or its peak RSS grows, by more than the threshold.
+ */
+public final class MacroBenchmark {
+
+    /** The median run of one engine. */
+    record Result(String engine, double filesPerSecond, double megabytesPerSecond, long peakRssKb, long gcMillis,
+            long filesWithHits) {
+    }
+
+    private final Path corpus;
+    private int runs = 3;
+    private List<String> engines = allEngines();
+    private Path version1Classes;
+    private Path baseline;
+    private Path saveBaseline;
+    private double threshold = 0.10;
+
+    // Size of the corpus, for the rates
+    private long files;
+    private long bytes;
+
+    private MacroBenchmark(Path corpus) {
+        this.corpus = corpus;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0 || args.length % 2 == 0) {
+            System.err.println("Usage: MacroBenchmark <corpus dir> [--runs n] [--engines a,b,...]"
+                    + " [--version1-classes dir] [--baseline file] [--save-baseline file] [--threshold r]");
+            System.exit(2);
+        }
+        MacroBenchmark benchmark = new MacroBenchmark(Paths.get(args[0]));
+        for (int i = 1; i < args.length; i += 2) {
+            benchmark.set(args[i], args[i + 1]);
+        }
+        System.exit(benchmark.run() ? 0 : 1);
+    }
+
+    private void set(String option, String value) {
+        switch (option) {
+            case "--runs" -> runs = Integer.parseInt(value);
+            case "--engines" -> engines = Arrays.asList(value.split(","));
+            case "--version1-classes" -> version1Classes = Paths.get(value);
+            case "--baseline" -> baseline = Paths.get(value);
+            case "--save-baseline" -> saveBaseline = Paths.get(value);
+            case "--threshold" -> threshold = Double.parseDouble(value);
+            default -> throw new IllegalArgumentException("Unknown option: " + option);
+        }
+    }
+
+    private static List<String> allEngines() {
+        List<String> engines = new ArrayList<>();
+        engines.add(ScanProbe.VERSION1);
+        for (ScanEngine engine : ScanEngine.values()) {
+            engines.add(engine.name());
+        }
+        return engines;
+    }
+
+    /** Runs every engine; returns false on a regression against the baseline. */
+    boolean run() throws IOException, InterruptedException {
+        Path tree = corpus.resolve(CorpusGenerator.TREE);
+        Path words = corpus.resolve(CorpusGenerator.WORDS_FILE);
+        measureCorpus(tree);
+        System.out.printf("Corpus: %d files, %s, %d runs per engine%n", files, ReportEntry.formatSize(bytes), runs);
+
+        // 1. Every engine, median of its runs
+        List<Result> results = new ArrayList<>();
+        for (String engine : engines) {
+            if (ScanProbe.VERSION1.equals(engine) && version1Classes == null) {
+                System.out.println("Skipping " + engine + ": no --version1-classes");
+                continue;
+            }
+            List<Result> engineRuns = new ArrayList<>();
+            for (int i = 0; i < runs; i++) {
+                engineRuns.add(runOnce(engine, tree, words));
+            }
+            engineRuns.sort(Comparator.comparingDouble(Result::filesPerSecond));
+            results.add(engineRuns.get(engineRuns.size() / 2));
+        }
+
+        // 2. Table
+        System.out.printf("%n%-16s %12s %10s %14s %10s %14s%n", "Engine", "files/s", "MB/s", "peak RSS", "GC ms",
+                "files w/ hits");
+        for (Result result : results) {
+            System.out.printf(Locale.ROOT, "%-16s %12.0f %10.1f %14s %10d %14d%n", result.engine(),
+                    result.filesPerSecond(), result.megabytesPerSecond(),
+                    result.peakRssKb() < 0 ? "n/a" : ReportEntry.formatSize(result.peakRssKb() * 1024),
+                    result.gcMillis(), result.filesWithHits());
+        }
+
+        // 3. Baseline
+        if (saveBaseline != null) {
+            saveBaseline(results);
+        }
+        return baseline == null || compareWithBaseline(results);
+    }
+
+    private Result runOnce(String engine, Path tree, Path words) throws IOException, InterruptedException {
+        Path output = Files.createTempDirectory("forbiddenfinder-bench-");
+        try {
+            String classPath = System.getProperty("java.class.path");
+            if (ScanProbe.VERSION1.equals(engine)) {
+                classPath = version1Classes + File.pathSeparator + classPath;
+            }
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            Process process = new ProcessBuilder(java, "-cp", classPath, ScanProbe.class.getName(), engine,
+                    tree.toString(), words.toString(), output.toString())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+
+            String result = null;
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(ScanProbe.RESULT)) {
+                        result = line;
+                    }
+                }
+            }
+            if (process.waitFor() != 0 || result == null) {
+                throw new IOException(engine + " run failed (exit code " + process.exitValue() + ")");
+            }
+
+            double seconds = Math.max(1, field(result, "millis")) / 1000.0;
+            return new Result(engine, files / seconds, bytes / 1e6 / seconds, field(result, "peakRssKb"),
+                    field(result, "gcMillis"), field(result, "filesWithHits"));
+        } finally {
+            deleteTree(output);
+        }
+    }
+
+    private static long field(String result, String name) {
+        for (String part : result.split(" ")) {
+            if (part.startsWith(name + "=")) {
+                return Long.parseLong(part.substring(name.length() + 1));
+            }
+        }
+        throw new IllegalArgumentException("No " + name + " in: " + result);
+    }
+
+    // --- Baseline ---
+
+    private void saveBaseline(List<Result> results) throws IOException {
+        Properties properties = new Properties();
+        for (Result result : results) {
+            properties.setProperty(result.engine() + ".filesPerSecond", Double.toString(result.filesPerSecond()));
+            properties.setProperty(result.engine() + ".peakRssKb", Long.toString(result.peakRssKb()));
+        }
+        try (Writer writer = Files.newBufferedWriter(saveBaseline, StandardCharsets.UTF_8)) {
+            properties.store(writer, "MacroBenchmark baseline for " + corpus);
+        }
+        System.out.println("Baseline saved to " + saveBaseline);
+    }
+
+    private boolean compareWithBaseline(List<Result> results) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(baseline, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+
+        boolean passed = true;
+        for (Result result : results) {
+            String filesPerSecond = properties.getProperty(result.engine() + ".filesPerSecond");
+            if (filesPerSecond != null && result.filesPerSecond() < Double.parseDouble(filesPerSecond) * (1 - threshold)) {
+                System.out.printf(Locale.ROOT, "REGRESSION %s: %.0f files/s, baseline %.0f%n", result.engine(),
+                        result.filesPerSecond(), Double.parseDouble(filesPerSecond));
+                passed = false;
+            }
+            String peakRssKb = properties.getProperty(result.engine() + ".peakRssKb");
+            if (peakRssKb != null && Long.parseLong(peakRssKb) > 0
+                    && result.peakRssKb() > Long.parseLong(peakRssKb) * (1 + threshold)) {
+                System.out.printf("REGRESSION %s: peak RSS %s, baseline %s%n", result.engine(),
+                        ReportEntry.formatSize(result.peakRssKb() * 1024),
+                        ReportEntry.formatSize(Long.parseLong(peakRssKb) * 1024));
+                passed = false;
+            }
+        }
+        System.out.println(passed ? "No regression against " + baseline
+                : String.format(Locale.ROOT, "Regressed by more than %.0f%% against %s", threshold * 100, baseline));
+        return passed;
+    }
+
+    // --- Files ---
+
+    private void measureCorpus(Path tree) throws IOException {
+        Files.walkFileTree(tree, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    files++;
+                    bytes += attrs.size();
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root))
+            return;
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
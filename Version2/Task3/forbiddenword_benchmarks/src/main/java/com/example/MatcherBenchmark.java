@@ -0,0 +1,183 @@
+package com.example;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Matching throughput of one in-memory text, per matcher:
+ *
+ * - patternPerWord: the original FileProcessorCallable loop, which compiles
+ *   a {@code \bword\b} pattern for every word on every line, counts, then
+ *   replaces.
+ * - precompiledPatterns: the same loop with the patterns compiled once, to
+ *   separate the cost of compiling from the cost of one pass per word.
+ * - wordMatcherLines: {@link WordMatcher#maskLine}, the decoded scan mode.
+ * - wordMatcherBytes: {@link WordMatcher#scanBytes} on the raw bytes, the
+ *   mapped / pipeline scan modes.
+ *
+ * Every operation scans the whole text; the "megabytes" counter is the text
+ * size, so JMH reports it in MB/s. The line-based matchers also decode the
+ * text, as they do in a scan. The per-word loops take minutes per operation
+ * at 100k words; leave them out with {@code -p dictionarySize=10,1000} or run
+ * only the WordMatcher ones with {@code "MatcherBenchmark.wordMatcher.*"}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class MatcherBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    public int dictionarySize;
+
+    @Param({ "80", "2000" })
+    public int lineLength;
+
+    @Param({ "0", "0.01", "0.1" })
+    public double hitDensity;
+
+    @Param({ "US-ASCII", "ISO-8859-1", "UTF-8" })
+    public String charset;
+
+    @Param("64")
+    public int textKiB;
+
+    private Charset encoding;
+    private byte[] text;
+    private List<String> forbiddenWords;
+    private Pattern[] patterns;
+    private WordMatcher matcher;
+
+    /** Bytes scanned, as a rate next to the operations. */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Scanned {
+        public double megabytes;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        encoding = Charset.forName(charset);
+        MatcherCorpus corpus = new MatcherCorpus(dictionarySize, lineLength, hitDensity, encoding, textKiB * 1024);
+        text = corpus.text();
+        forbiddenWords = corpus.dictionary();
+
+        patterns = new Pattern[forbiddenWords.size()];
+        for (int i = 0; i < patterns.length; i++) {
+            patterns[i] = wordPattern(forbiddenWords.get(i));
+        }
+        matcher = new WordMatcher(forbiddenWords);
+    }
+
+    @Benchmark
+    public long patternPerWord(Scanned scanned) throws IOException {
+        long replacementsCount = 0;
+        StringBuilder replacementContent = new StringBuilder(text.length);
+        try (BufferedReader reader = reader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String currentLine = line;
+                for (String word : forbiddenWords) {
+                    Matcher wordMatcher = wordPattern(word).matcher(currentLine);
+                    long count = 0;
+                    while (wordMatcher.find()) {
+                        count++;
+                    }
+                    if (count > 0) {
+                        wordMatcher.reset(currentLine);
+                        currentLine = wordMatcher.replaceAll(WordMatcher.MASK);
+                        replacementsCount += count;
+                    }
+                }
+                replacementContent.append(currentLine).append(System.lineSeparator());
+            }
+        }
+        scanned.megabytes += text.length / 1e6;
+        return replacementsCount + replacementContent.length();
+    }
+
+    @Benchmark
+    public long precompiledPatterns(Scanned scanned) throws IOException {
+        long replacementsCount = 0;
+        StringBuilder replacementContent = new StringBuilder(text.length);
+        try (BufferedReader reader = reader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String currentLine = line;
+                for (Pattern pattern : patterns) {
+                    Matcher wordMatcher = pattern.matcher(currentLine);
+                    long count = 0;
+                    while (wordMatcher.find()) {
+                        count++;
+                    }
+                    if (count > 0) {
+                        wordMatcher.reset(currentLine);
+                        currentLine = wordMatcher.replaceAll(WordMatcher.MASK);
+                        replacementsCount += count;
+                    }
+                }
+                replacementContent.append(currentLine).append(System.lineSeparator());
+            }
+        }
+        scanned.megabytes += text.length / 1e6;
+        return replacementsCount + replacementContent.length();
+    }
+
+    @Benchmark
+    public long wordMatcherLines(Scanned scanned) throws IOException {
+        long[] hits = new long[matcher.size()];
+        long replacementsCount = 0;
+        StringBuilder maskedLine = new StringBuilder();
+        long maskedLength = 0;
+        try (BufferedReader reader = reader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                maskedLine.setLength(0);
+                replacementsCount += matcher.maskLine(line, maskedLine, hits);
+                maskedLength += maskedLine.length();
+            }
+        }
+        scanned.megabytes += text.length / 1e6;
+        return replacementsCount + maskedLength;
+    }
+
+    @Benchmark
+    public long wordMatcherBytes(Scanned scanned) throws IOException {
+        long[] hits = new long[matcher.size()];
+        long replacementsCount = matcher.scanBytes(ByteBuffer.wrap(text), 0, text.length, hits, null);
+        scanned.megabytes += text.length / 1e6;
+        return replacementsCount;
+    }
+
+    private BufferedReader reader() {
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(text), encoding));
+    }
+
+    private static Pattern wordPattern(String word) {
+        return Pattern.compile("\\b" + Pattern.quote(word) + "\\b", Pattern.CASE_INSENSITIVE);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Deterministic input for the matcher benchmarks: a dictionary of forbidden
+ * words and a text made of lines of about the same length, in which a given
+ * fraction of the words are forbidden. The same parameters always give the
+ * same bytes.
+ */
+final class MatcherCorpus {
+
+    private static final long SEED = 20240501L;
+    // Non-ASCII filler words, so decoding and byte scanning see multi-byte input
+    private static final String[] LATIN_1_WORDS = { "café", "über", "señor", "façade", "größe", "naïve" };
+    private static final String[] UTF_8_WORDS = { "привет", "данные", "数据", "ファイル", "résumé", "Ελλάδα" };
+
+    private final List<String> dictionary;
+    private final byte[] text;
+
+    /**
+     * @param dictionarySize number of forbidden words
+     * @param lineLength     characters per line, about
+     * @param hitDensity     fraction of the text's words that are forbidden
+     * @param charset        encoding of the text; non-ASCII words are mixed in where it has them
+     * @param textBytes      size of the text, about
+     */
+    MatcherCorpus(int dictionarySize, int lineLength, double hitDensity, Charset charset, int textBytes) {
+        Random random = new Random(SEED);
+
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < dictionarySize) {
+            words.add(randomWord(random, 4, 10));
+        }
+        dictionary = List.copyOf(words);
+
+        List<String> fillers = new ArrayList<>();
+        Set<String> taken = new HashSet<>(words);
+        while (fillers.size() < 1000) {
+            String filler = randomWord(random, 2, 9);
+            if (taken.add(filler)) {
+                fillers.add(filler);
+            }
+        }
+        String[] special = switch (charset.name()) {
+            case "ISO-8859-1" -> LATIN_1_WORDS;
+            case "UTF-8", "UTF-16" -> UTF_8_WORDS;
+            default -> new String[0];
+        };
+
+        StringBuilder out = new StringBuilder(textBytes + lineLength);
+        StringBuilder line = new StringBuilder(lineLength + 16);
+        while (out.length() < textBytes) {
+            line.setLength(0);
+            while (line.length() < lineLength) {
+                if (line.length() > 0) {
+                    line.append(random.nextInt(12) == 0 ? ", " : " ");
+                }
+                if (random.nextDouble() < hitDensity) {
+                    String word = dictionary.get(random.nextInt(dictionary.size()));
+                    // Some hits in upper case: matching ignores ASCII case
+                    line.append(random.nextInt(4) == 0 ? word.toUpperCase() : word);
+                } else if (special.length > 0 && random.nextInt(8) == 0) {
+                    line.append(special[random.nextInt(special.length)]);
+                } else {
+                    line.append(fillers.get(random.nextInt(fillers.size())));
+                }
+            }
+            out.append(line).append('\n');
+        }
+        text = out.toString().getBytes(charset);
+    }
+
+    List<String> dictionary() {
+        return dictionary;
+    }
+
+    /** The encoded text. */
+    byte[] text() {
+        return text;
+    }
+
+    static String randomWord(Random random, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        char[] word = new char[length];
+        for (int i = 0; i < length; i++) {
+            word[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(word);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example;
+
+import javafx.application.Platform;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * One scan in its own JVM, started by {@link MacroBenchmark}: a fresh process
+ * per run keeps warm caches and the heap of one engine out of the next one's
+ * numbers, and gives each run its own peak RSS and GC time.
+ *
+ * Usage: {@code ScanProbe <engine> <tree> <words.txt> <output dir>}, where the
+ * engine is a {@link ScanEngine} or {@code VERSION1}. For Version1 the
+ * launcher puts the Version1 classes first on the class path, so they shadow
+ * the Version2 classes of the same name. Prints one {@code RESULT} line.
+ */
+public final class ScanProbe {
+
+    static final String VERSION1 = "VERSION1";
+    static final String RESULT = "RESULT";
+
+    private ScanProbe() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String engine = args[0];
+        Path tree = Paths.get(args[1]);
+        Set<String> words = new HashSet<>(Files.readAllLines(Paths.get(args[2]), StandardCharsets.UTF_8));
+        Path output = Paths.get(args[3]);
+
+        // The tasks report progress through the FX toolkit
+        Platform.startup(() -> {
+        });
+        try {
+            ForbiddenFinderTask task = VERSION1.equals(engine)
+                    ? new ForbiddenFinderTask(tree, words, output)
+                    : Version2.newTask(ScanEngine.valueOf(engine), tree, words, output);
+
+            long start = System.nanoTime();
+            task.run();
+            List<ReportEntry> entries;
+            try {
+                entries = task.get();
+            } catch (ExecutionException e) {
+                System.err.println("Scan failed: " + e.getCause());
+                System.exit(1);
+                return;
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+
+            System.out.printf("%s millis=%d gcMillis=%d peakRssKb=%d filesWithHits=%d%n",
+                    RESULT, millis, gcMillis(), peakRssKb(), entries == null ? 0 : entries.size());
+        } finally {
+            Platform.exit();
+        }
+    }
+
+    /** Kept apart so that a Version1 run never loads ScanOptions. */
+    private static final class Version2 {
+        static ForbiddenFinderTask newTask(ScanEngine engine, Path tree, Set<String> words, Path output) {
+            ScanOptions options = new ScanOptions();
+            options.setScanEngine(engine);
+            return new ForbiddenFinderTask(tree, words, output, options);
+        }
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+    /** VmHWM from /proc (Linux); -1 where it is not available. */
+    private static long peakRssKb() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (Exception e) {
+            // Not Linux
+        }
+        return -1;
+    }
+}
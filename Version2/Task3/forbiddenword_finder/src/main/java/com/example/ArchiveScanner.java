@@ -0,0 +1,288 @@
+package com.example;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Scans the entries of zip / jar and gzip files without extracting them.
+ *
+ * A zip file on disk has a central directory, so each of its entries is a
+ * task of its own: the tasks run on the pool and each inflates its entry
+ * straight from the file, so a big jar keeps every core busy instead of one
+ * thread reading it from start to end. Archives inside an archive can only
+ * be read in order; their entries are scanned by the task that found them,
+ * down to {@code maxDepth} levels of nesting. A gzip file is one entry.
+ *
+ * Entries are held in memory (within the byte budget) and matched as bytes,
+ * like the mapped scan mode. Entries that look binary, need charset decoding,
+ * are excluded by extension or are bigger than the entry limit are counted
+ * and skipped. An entry is named by a composite path such as
+ * {@code bundle.zip!/lib/app.jar!/conf/app.properties}.
+ */
+final class ArchiveScanner {
+
+    /** Separates an archive from the path of an entry inside it. */
+    static final String SEPARATOR = "!/";
+
+    private static final Set<String> ZIP_EXTENSIONS = Set.of("zip", "jar", "war", "ear");
+    private static final String GZIP_EXTENSION = "gz";
+
+    /** Receives an entry with matches, on the thread that scanned it. */
+    interface EntrySink {
+        void onMatches(String entryPath, ByteBuffer content, PatchFile.MatchList matches, long[] hits)
+                throws IOException;
+    }
+
+    private final WordMatcher matcher;
+    private final FileClassifier classifier;
+    private final int maxDepth;
+    private final long maxEntrySize;
+    private final ExecutorService pool;
+    private final IoLimiter limiter;
+    private final BiConsumer<String, String> failed; // entry path, reason
+    private final BooleanSupplier cancelled;
+
+    // For the report
+    private final AtomicLong archivesOpened = new AtomicLong(0);
+    private final AtomicLong entriesScanned = new AtomicLong(0);
+    private final AtomicLong entryBytes = new AtomicLong(0);
+    private final AtomicLong entriesSkipped = new AtomicLong(0);
+
+    /**
+     * Entries are reserved in the {@code limiter} the scan hands in (its own,
+     * unless the engine's budget cannot be waited on from a scanning thread);
+     * entries that cannot be read go to {@code failed} like any other
+     * per-file error.
+     */
+    ArchiveScanner(WordMatcher matcher, FileClassifier classifier, ScanOptions options, ExecutorService pool,
+            IoLimiter limiter, BiConsumer<String, String> failed, BooleanSupplier cancelled) {
+        this.matcher = matcher;
+        this.classifier = classifier;
+        this.maxDepth = options.getMaxArchiveDepth();
+        this.maxEntrySize = Math.min(Math.min(options.getMaxFileSize(), options.getChunkThreshold()),
+                Integer.MAX_VALUE - 8);
+        this.pool = pool;
+        this.limiter = limiter;
+        this.failed = failed;
+        this.cancelled = cancelled;
+    }
+
+    static boolean isArchive(Path file) {
+        return isArchive(file.getFileName().toString());
+    }
+
+    static boolean isArchive(String fileName) {
+        String extension = FileClassifier.extensionOf(fileName);
+        return ZIP_EXTENSIONS.contains(extension) || extension.equals(GZIP_EXTENSION);
+    }
+
+    /**
+     * Scans every entry of an archive file and adds the per-word hits to
+     * {@code hits}. Entries with matches go to {@code sink}. Returns the total
+     * number of matches, or -1 if the scan was cancelled.
+     */
+    long scan(Path archive, long[] hits, EntrySink sink) throws IOException, InterruptedException {
+        archivesOpened.incrementAndGet();
+        String name = archive.getFileName().toString();
+        long[] found;
+        if (FileClassifier.extensionOf(name).equals(GZIP_EXTENSION)) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+                found = scanEntry(in, name + SEPARATOR + gunzippedName(name), -1, 1, sink);
+            }
+        } else {
+            found = scanZipFile(archive, name, sink);
+        }
+        if (found == null)
+            return -1;
+
+        long total = 0;
+        for (int id = 0; id < found.length; id++) {
+            hits[id] += found[id];
+            total += found[id];
+        }
+        return total;
+    }
+
+    long getArchivesOpened() {
+        return archivesOpened.get();
+    }
+
+    long getEntriesScanned() {
+        return entriesScanned.get();
+    }
+
+    long getEntryBytes() {
+        return entryBytes.get();
+    }
+
+    long getEntriesSkipped() {
+        return entriesSkipped.get();
+    }
+
+    // --- Archives ---
+
+    /** A zip file on disk: one pool task per entry, each reading its entry through the central directory. */
+    private long[] scanZipFile(Path archive, String name, EntrySink sink) throws IOException, InterruptedException {
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            List<Callable<long[]>> entries = new ArrayList<>();
+            Enumeration<? extends ZipEntry> all = zip.entries();
+            while (all.hasMoreElements()) {
+                ZipEntry entry = all.nextElement();
+                if (entry.isDirectory())
+                    continue;
+                String path = name + SEPARATOR + entry.getName();
+                entries.add(() -> {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        return scanEntry(in, path, entry.getSize(), 1, sink);
+                    } catch (IOException e) {
+                        // A broken entry does not cost the rest of the archive
+                        failed.accept(path, e.getMessage());
+                        entriesSkipped.incrementAndGet();
+                        return new long[matcher.size()];
+                    }
+                });
+            }
+
+            long[] total = new long[matcher.size()];
+            for (Future<long[]> result : pool.invokeAll(entries)) {
+                if (!add(total, get(result)))
+                    return null;
+            }
+            return total;
+        }
+    }
+
+    /** A zip inside an archive: its entries in stream order, on this thread. */
+    private long[] scanZipStream(ZipInputStream in, String path, int depth, EntrySink sink)
+            throws IOException, InterruptedException {
+        long[] total = new long[matcher.size()];
+        ZipEntry entry;
+        while ((entry = in.getNextEntry()) != null) {
+            if (entry.isDirectory())
+                continue;
+            if (!add(total, scanEntry(in, path + SEPARATOR + entry.getName(), entry.getSize(), depth, sink)))
+                return null;
+        }
+        return total;
+    }
+
+    /**
+     * One entry, read from {@code in} without closing it. A nested archive is
+     * opened if the depth allows; anything else is classified, loaded and
+     * matched. Returns the entry's per-word hits, or null if cancelled.
+     */
+    private long[] scanEntry(InputStream in, String path, long size, int depth, EntrySink sink)
+            throws IOException, InterruptedException {
+        if (cancelled.getAsBoolean())
+            return null;
+        String name = path.substring(path.lastIndexOf('/') + 1);
+
+        // 1. A nested archive: streamed, never buffered as a whole
+        if (isArchive(name)) {
+            if (depth >= maxDepth) {
+                entriesSkipped.incrementAndGet();
+                return new long[matcher.size()];
+            }
+            archivesOpened.incrementAndGet();
+            InputStream shielded = new FilterInputStream(in) {
+                @Override
+                public void close() {
+                    // The outer stream is closed by whoever opened it
+                }
+            };
+            if (FileClassifier.extensionOf(name).equals(GZIP_EXTENSION)) {
+                try (InputStream gunzipped = new GZIPInputStream(shielded)) {
+                    return scanEntry(gunzipped, path + SEPARATOR + gunzippedName(name), -1, depth + 1, sink);
+                }
+            }
+            try (ZipInputStream nested = new ZipInputStream(shielded)) {
+                return scanZipStream(nested, path, depth + 1, sink);
+            }
+        }
+
+        // 2. Same extension and size rules as files, then into memory within the byte budget
+        if (!classifier.acceptEntry(name, size)) {
+            entriesSkipped.incrementAndGet();
+            return new long[matcher.size()];
+        }
+        // An entry of unknown size is only reserved once it is read
+        int reserved = size >= 0 ? limiter.acquireBytes(size) : 0;
+        try {
+            ByteBuffer content = read(in, size);
+            if (content == null || classifier.isBinaryEntry(content) || !MappedFileScanner.isByteScannable(content)) {
+                entriesSkipped.incrementAndGet();
+                return new long[matcher.size()];
+            }
+            if (size < 0) {
+                reserved = limiter.acquireBytes(content.limit());
+            }
+
+            // 3. Match; entries with matches go to the sink with their content
+            long[] hits = new long[matcher.size()];
+            PatchFile.MatchList matches = new PatchFile.MatchList();
+            matcher.scanBytes(content, 0, content.limit(), hits,
+                    (start, end, wordId) -> matches.onMatch(start, end - start, wordId));
+            entriesScanned.incrementAndGet();
+            entryBytes.addAndGet(content.limit());
+            if (matches.size() > 0) {
+                sink.onMatches(path, content, matches, hits);
+            }
+            return hits;
+        } finally {
+            limiter.releaseBytes(reserved);
+        }
+    }
+
+    /** The whole entry, or null if it is bigger than the entry limit. */
+    private ByteBuffer read(InputStream in, long size) throws IOException {
+        if (size > maxEntrySize)
+            return null;
+        // readNBytes grows its buffer as it reads, so an unknown size does not allocate the limit
+        byte[] bytes = in.readNBytes((int) (size >= 0 ? size : maxEntrySize + 1));
+        return bytes.length > maxEntrySize ? null : ByteBuffer.wrap(bytes);
+    }
+
+    /** The name of a gzip file's content: {@code notes.txt.gz} holds {@code notes.txt}. */
+    private static String gunzippedName(String name) {
+        return name.substring(0, name.length() - GZIP_EXTENSION.length() - 1);
+    }
+
+    /** Adds an entry's hits to the total; false if the entry was cancelled. */
+    private static boolean add(long[] total, long[] hits) {
+        if (hits == null)
+            return false;
+        for (int id = 0; id < hits.length; id++) {
+            total[id] += hits[id];
+        }
+        return true;
+    }
+
+    private static long[] get(Future<long[]> result) throws IOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io)
+                throw io;
+            throw new IOException(e.getCause());
+        }
+    }
+}
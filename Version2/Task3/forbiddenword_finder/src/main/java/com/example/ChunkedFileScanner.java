@@ -0,0 +1,243 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Scans one very large ASCII / UTF-8 file as several chunks in parallel.
+ *
+ * Chunk boundaries are moved forward to the next line break when there is one
+ * nearby; forbidden words never contain one, so no match crosses such a cut.
+ * A file without line breaks (minified code, one-line dumps) is cut anyway:
+ * every chunk is scanned with the bytes around it as context and hands out
+ * only matches that start in it, and the rare chunk that the previous chunk's
+ * last match reaches into is scanned again from the end of that match. The
+ * count pass also gives the masked size of every chunk, so the masking pass
+ * writes each chunk straight to its final offset in the output and the chunks
+ * come out stitched in order.
+ */
+final class ChunkedFileScanner {
+
+    private static final int PROBE_SIZE = 64 * 1024;
+    private static final int MASK_LENGTH = WordMatcher.MASK.length();
+
+    private final FileChannel channel;
+    private final WordMatcher matcher;
+    private final ExecutorService pool;
+    private final BooleanSupplier cancelled;
+    private final long[] bounds; // chunk i is [bounds[i], bounds[i + 1])
+    private long[] resumeAt; // filled in by count(): where chunk i's matches and output start
+    private long[] outputOffsets; // filled in by count()
+    private long contentHash = -1; // filled in by collectMatches()
+
+    ChunkedFileScanner(FileChannel channel, WordMatcher matcher, long chunkSize, ExecutorService pool,
+            BooleanSupplier cancelled) throws IOException {
+        this.channel = channel;
+        this.matcher = matcher;
+        this.pool = pool;
+        this.cancelled = cancelled;
+        this.bounds = chunkBounds(channel, channel.size(), chunkSize);
+    }
+
+    int chunkCount() {
+        return bounds.length - 1;
+    }
+
+    /**
+     * Counts every chunk in parallel and adds the per-word hits to {@code hits}.
+     * Returns the total number of matches, or -1 if the scan was cancelled.
+     */
+    long count(long[] hits) throws IOException, InterruptedException {
+        List<Chunk> chunks = scanChunks(false);
+        if (chunks == null)
+            return -1;
+
+        long total = 0;
+        resumeAt = new long[chunkCount()];
+        outputOffsets = new long[bounds.length];
+        for (int i = 0; i < chunks.size(); i++) {
+            Chunk chunk = chunks.get(i);
+            resumeAt[i] = chunk.resumeAt();
+
+            // Each match turns byteLength(id) bytes into MASK_LENGTH bytes
+            long maskedLength = chunk.end() - chunk.resumeAt();
+            for (int id = 0; id < chunk.hits().length; id++) {
+                hits[id] += chunk.hits()[id];
+                total += chunk.hits()[id];
+                maskedLength += chunk.hits()[id] * (MASK_LENGTH - matcher.byteLength(id));
+            }
+            outputOffsets[i + 1] = outputOffsets[i] + maskedLength;
+        }
+        return total;
+    }
+
+    /**
+     * Patch output: scans every chunk in parallel, adds the per-word hits to
+     * {@code hits} and appends all match positions to {@code matches} in file
+     * order. Each chunk is hashed as it is scanned, for {@link #contentHash()}.
+     * Returns the total number of matches, or -1 if the scan was cancelled.
+     */
+    long collectMatches(long[] hits, PatchFile.MatchList matches) throws IOException, InterruptedException {
+        List<Chunk> chunks = scanChunks(true);
+        if (chunks == null)
+            return -1;
+
+        long hash = 0; // The hash of no bytes
+        for (int i = 0; i < chunks.size(); i++) {
+            matches.addAll(chunks.get(i).matches());
+            hash = ContentHash.combine(hash, chunks.get(i).hash(), bounds[i + 1] - bounds[i]);
+        }
+        contentHash = hash;
+        matches.countWords(hits);
+        return matches.size();
+    }
+
+    /** The content hash of the whole file, once collectMatches() has run. */
+    long contentHash() {
+        return contentHash;
+    }
+
+    /** Writes the masked file to {@code out}, every chunk in parallel at its own offset. */
+    void writeMasked(FileChannel out) throws IOException, InterruptedException {
+        List<Callable<Void>> chunks = new ArrayList<>();
+        for (int i = 0; i < chunkCount(); i++) {
+            long from = bounds[i];
+            long to = bounds[i + 1];
+            long resume = resumeAt[i];
+            PositionedChannel target = new PositionedChannel(out, outputOffsets[i]);
+            chunks.add(() -> {
+                MappedFileScanner.scan(channel, from, to, resume, matcher, null, target, null, null, () -> false);
+                return null;
+            });
+        }
+        for (Future<Void> result : pool.invokeAll(chunks)) {
+            get(result);
+        }
+    }
+
+    /** What one chunk holds: hits (count pass) or matches and hash (patch pass). */
+    private record Chunk(long resumeAt, long end, long[] hits, PatchFile.MatchList matches, long hash) {
+    }
+
+    /**
+     * Scans every chunk in parallel, each assuming no match crosses into it,
+     * then in file order scans again any chunk the previous chunk's last match
+     * does reach into. Returns null if the scan was cancelled.
+     */
+    private List<Chunk> scanChunks(boolean collect) throws IOException, InterruptedException {
+        List<Callable<Chunk>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunkCount(); i++) {
+            int chunk = i;
+            tasks.add(() -> scanChunk(chunk, bounds[chunk], collect));
+        }
+
+        List<Future<Chunk>> results = pool.invokeAll(tasks);
+        List<Chunk> chunks = new ArrayList<>();
+        long previousEnd = 0;
+        for (int i = 0; i < results.size(); i++) {
+            Chunk chunk = get(results.get(i));
+            if (chunk != null && previousEnd > chunk.resumeAt()) {
+                chunk = scanChunk(i, previousEnd, collect);
+            }
+            if (chunk == null)
+                return null;
+            chunks.add(chunk);
+            previousEnd = chunk.end();
+        }
+        return chunks;
+    }
+
+    private Chunk scanChunk(int i, long resumeAt, boolean collect) throws IOException {
+        long[] hits = collect ? null : new long[matcher.size()];
+        PatchFile.MatchList matches = collect ? new PatchFile.MatchList() : null;
+        ContentHash.Accumulator hash = collect ? new ContentHash.Accumulator() : null;
+        MappedFileScanner.Range range = MappedFileScanner.scan(channel, bounds[i], bounds[i + 1], resumeAt, matcher,
+                hits, null, matches, hash, cancelled);
+        if (range == null)
+            return null;
+        return new Chunk(resumeAt, range.end(), hits, matches, collect ? hash.value() : 0);
+    }
+
+    private static <T> T get(Future<T> result) throws IOException, InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io)
+                throw io;
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Splits at roughly every chunkSize bytes, each cut moved to just after a
+     * line break if there is one within the next PROBE_SIZE bytes.
+     */
+    private static long[] chunkBounds(FileChannel channel, long size, long chunkSize) throws IOException {
+        List<Long> cuts = new ArrayList<>();
+        cuts.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(PROBE_SIZE);
+        long next = chunkSize;
+        while (next < size) {
+            long cut = nextLineStart(channel, next, probe);
+            if (cut >= size)
+                break;
+            cuts.add(cut);
+            next = cut + chunkSize;
+        }
+        cuts.add(size);
+
+        long[] bounds = new long[cuts.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = cuts.get(i);
+        }
+        return bounds;
+    }
+
+    /** Position just after the first '\n' in the probe read at {@code from}, or {@code from} if there is none. */
+    private static long nextLineStart(FileChannel channel, long from, ByteBuffer probe) throws IOException {
+        probe.clear();
+        int read = channel.read(probe, from);
+        for (int i = 0; i < read; i++) {
+            if (probe.get(i) == '\n')
+                return from + i + 1;
+        }
+        return from;
+    }
+
+    /** Sequential writes to a FileChannel, starting at a fixed offset (positional, so thread-safe). */
+    private static final class PositionedChannel implements WritableByteChannel {
+        private final FileChannel channel;
+        private long position;
+
+        PositionedChannel(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+            int written = channel.write(source, position);
+            position += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // The shared channel is closed by its owner
+        }
+    }
+}
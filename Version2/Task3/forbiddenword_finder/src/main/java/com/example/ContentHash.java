@@ -0,0 +1,133 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+/**
+ * Cheap 64-bit content hash: CRC32C and CRC32 of the same bytes side by side.
+ * Both are hardware-accelerated, so hashing runs at memory speed. A scan that
+ * reads the file anyway hashes it as it goes ({@link Accumulator}); chunks
+ * hashed in parallel are joined with {@link #combine}.
+ */
+final class ContentHash {
+
+    private static final int BUFFER_SIZE = 256 * 1024;
+    // The reflected polynomials of CRC32C (high half) and CRC32 (low half)
+    private static final int CRC32C_POLYNOMIAL = 0x82F63B78;
+    private static final int CRC32_POLYNOMIAL = 0xEDB88320;
+
+    /** The hash of bytes seen piece by piece, in file order; the same value as of() on the whole. */
+    static final class Accumulator {
+        private final CRC32C high = new CRC32C();
+        private final CRC32 low = new CRC32();
+
+        /** Adds the remaining bytes; the buffer's position is not moved. */
+        void update(ByteBuffer bytes) {
+            high.update(bytes.duplicate());
+            low.update(bytes.duplicate());
+        }
+
+        long value() {
+            return (high.getValue() << 32) | low.getValue();
+        }
+    }
+
+    private ContentHash() {
+    }
+
+    static long of(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return of(channel);
+        }
+    }
+
+    /** Hash of a file that is already in memory; the buffer's position is not moved. */
+    static long of(ByteBuffer content) {
+        CRC32C high = new CRC32C();
+        CRC32 low = new CRC32();
+        high.update(content.duplicate());
+        low.update(content.duplicate());
+        return (high.getValue() << 32) | low.getValue();
+    }
+
+    static long of(FileChannel channel) throws IOException {
+        CRC32C high = new CRC32C();
+        CRC32 low = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        long position = 0;
+        int read;
+        while ((read = channel.read(buffer, position)) > 0) {
+            position += read;
+            buffer.flip();
+            high.update(buffer.duplicate());
+            low.update(buffer);
+            buffer.clear();
+        }
+        return (high.getValue() << 32) | low.getValue();
+    }
+
+    /**
+     * The hash of two pieces of a file one after the other, from the hashes of
+     * each and the length of the second (zlib's crc32_combine, for both halves).
+     */
+    static long combine(long first, long second, long secondLength) {
+        long high = combine((int) (first >>> 32), (int) (second >>> 32), secondLength, CRC32C_POLYNOMIAL);
+        long low = combine((int) first, (int) second, secondLength, CRC32_POLYNOMIAL);
+        return (high << 32) | (low & 0xffffffffL);
+    }
+
+    /**
+     * Runs {@code first} through {@code length} zero bytes, squaring the
+     * one-zero-bit operator (a 32x32 matrix over GF(2)) for each bit of the
+     * length, then adds {@code second}.
+     */
+    private static long combine(int first, int second, long length, int polynomial) {
+        if (length <= 0)
+            return first & 0xffffffffL;
+
+        int[] odd = new int[32]; // operator for an odd power of two zero bits
+        int[] even = new int[32];
+        odd[0] = polynomial;
+        for (int n = 1, row = 1; n < 32; n++, row <<= 1) {
+            odd[n] = row;
+        }
+        square(even, odd); // two zero bits
+        square(odd, even); // four zero bits
+
+        int crc = first;
+        do {
+            // The first square gives one zero byte
+            square(even, odd);
+            if ((length & 1) != 0)
+                crc = times(even, crc);
+            length >>= 1;
+            if (length == 0)
+                break;
+            square(odd, even);
+            if ((length & 1) != 0)
+                crc = times(odd, crc);
+            length >>= 1;
+        } while (length != 0);
+        return (crc ^ second) & 0xffffffffL;
+    }
+
+    private static int times(int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0)
+                sum ^= matrix[i];
+        }
+        return sum;
+    }
+
+    private static void square(int[] square, int[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = times(matrix, matrix[n]);
+        }
+    }
+}
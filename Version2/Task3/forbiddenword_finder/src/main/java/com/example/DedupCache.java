@@ -0,0 +1,135 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds byte-identical files within one scan, so each distinct content is
+ * scanned once and every other copy reuses its result.
+ *
+ * Files are grouped by size first. A file with a size nobody else has is
+ * never hashed; only when a second file of that size turns up are both
+ * hashed (ContentHash), and copies with the same hash share one result.
+ */
+final class DedupCache {
+
+    /** What the first copy's scan produced. */
+    static final class Result {
+        final Path source;    // the copy that was scanned
+        final long count;     // 0 when nothing matched
+        final long[] hits;    // per-word counts, by WordMatcher id
+        final Path replaced;  // masked output of the first copy, null when nothing matched
+
+        Result(Path source, long count, long[] hits, Path replaced) {
+            this.source = source;
+            this.count = count;
+            this.hits = hits;
+            this.replaced = replaced;
+        }
+    }
+
+    /**
+     * The caller's part in a file's dedup: either the owner, which scans and
+     * must call {@link #complete} (null when the scan did not finish), or a
+     * duplicate, which takes the owner's result from {@link #await}.
+     */
+    static final class Claim {
+        private final CompletableFuture<Result> result;
+        private final boolean owner;
+        private final long contentHash; // -1 when the file was not hashed
+
+        private Claim(CompletableFuture<Result> result, boolean owner, long contentHash) {
+            this.result = result;
+            this.owner = owner;
+            this.contentHash = contentHash;
+        }
+
+        boolean isDuplicate() {
+            return !owner;
+        }
+
+        long getContentHash() {
+            return contentHash;
+        }
+
+        void complete(Result scanned) {
+            if (owner) {
+                result.complete(scanned);
+            }
+        }
+
+        /** The first copy's result, or null if it was cancelled or failed and this copy must be scanned. */
+        Result await() throws InterruptedException {
+            try {
+                return result.get();
+            } catch (ExecutionException e) {
+                return null;
+            }
+        }
+    }
+
+    /** All files of one size: the first one, and results by content hash once there is a second. */
+    private static final class SizeGroup {
+        final Path first;
+        final CompletableFuture<Result> firstResult = new CompletableFuture<>();
+        Map<Long, CompletableFuture<Result>> byHash; // guarded by this; null while the size is unique
+
+        SizeGroup(Path first) {
+            this.first = first;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, SizeGroup> groups = new ConcurrentHashMap<>();
+    private final AtomicLong duplicateFiles = new AtomicLong(0);
+    private final AtomicLong bytesSaved = new AtomicLong(0);
+
+    /** Decides whether {@code file} is scanned or waits for an identical file that is. */
+    Claim claim(Path file, long size) throws IOException {
+        SizeGroup fresh = new SizeGroup(file);
+        SizeGroup group = groups.putIfAbsent(size, fresh);
+        if (group == null) {
+            // The only file of this size so far: no hashing needed
+            return new Claim(fresh.firstResult, true, -1);
+        }
+
+        long hash = ContentHash.of(file);
+        synchronized (group) {
+            if (group.byHash == null) {
+                // Second file of this size: the first one gets hashed now
+                group.byHash = new HashMap<>();
+                try {
+                    group.byHash.put(ContentHash.of(group.first), group.firstResult);
+                } catch (IOException e) {
+                    System.err.println("Cannot hash " + group.first + ": " + e.getMessage());
+                }
+            }
+            CompletableFuture<Result> existing = group.byHash.get(hash);
+            if (existing == null) {
+                CompletableFuture<Result> own = new CompletableFuture<>();
+                group.byHash.put(hash, own);
+                return new Claim(own, true, hash);
+            }
+            return new Claim(existing, false, hash);
+        }
+    }
+
+    /** Counts a copy whose scan was skipped. */
+    void recordDuplicate(long size) {
+        duplicateFiles.incrementAndGet();
+        bytesSaved.addAndGet(size);
+    }
+
+    long getDuplicateFiles() {
+        return duplicateFiles.get();
+    }
+
+    long getBytesSaved() {
+        return bytesSaved.get();
+    }
+}
@@ -0,0 +1,163 @@
+package com.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recursive WatchService over the search tree for watch mode.
+ *
+ * Events are coalesced into batches: a batch starts with the first event and
+ * grows until the tree has been quiet for the debounce delay, or the batch is
+ * old or big enough. A file touched many times in one batch shows up once, so
+ * an event storm (untarring 100k files) costs one scan per file.
+ */
+final class DirectoryWatcher implements Closeable {
+
+    /** Files to (re)scan and paths that are gone, in event order. */
+    static final class Batch {
+        final Set<Path> changed = new LinkedHashSet<>();
+        final Set<Path> deleted = new LinkedHashSet<>();
+        // The WatchService dropped events: the tree must be re-synced as a whole
+        boolean overflow = false;
+
+        boolean isEmpty() {
+            return changed.isEmpty() && deleted.isEmpty() && !overflow;
+        }
+    }
+
+    private static final long MAX_BATCH_MILLIS = 5_000;
+    private static final int MAX_BATCH_FILES = 10_000;
+
+    private final Path root;
+    private final Path excluded; // our own output directory, if it is inside the tree
+    private final IgnoreRules ignoreRules;
+    private final WatchService watchService;
+
+    DirectoryWatcher(Path root, Path excluded, IgnoreRules ignoreRules) throws IOException {
+        this.root = root.toAbsolutePath().normalize();
+        this.excluded = excluded.toAbsolutePath().normalize();
+        this.ignoreRules = ignoreRules;
+        this.watchService = root.getFileSystem().newWatchService();
+        registerTree(this.root, null);
+    }
+
+    /**
+     * Blocks until something changes, then collects events until the tree has
+     * been quiet for {@code debounceMillis}.
+     */
+    Batch nextBatch(long debounceMillis) throws InterruptedException {
+        Batch batch = new Batch();
+        WatchKey key = watchService.take();
+        long started = System.currentTimeMillis();
+
+        while (key != null) {
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    batch.overflow = true;
+                    continue;
+                }
+                Path path = directory.resolve((Path) event.context());
+                ignoreRules.changed(path);
+                if (isIgnored(path) || ignoreRules.isIgnored(path, Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)))
+                    continue;
+
+                if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    batch.changed.remove(path);
+                    batch.deleted.add(path);
+                } else if (Files.isDirectory(path, LinkOption.NOFOLLOW_LINKS)) {
+                    // New directory (e.g. from an archive): watch it and pick up what is already inside
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        registerTree(path, batch);
+                    }
+                } else {
+                    batch.deleted.remove(path);
+                    batch.changed.add(path);
+                }
+            }
+            key.reset();
+
+            if (System.currentTimeMillis() - started >= MAX_BATCH_MILLIS
+                    || batch.changed.size() + batch.deleted.size() >= MAX_BATCH_FILES) {
+                break;
+            }
+            key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+        }
+
+        if (batch.overflow) {
+            // Events were lost: every file in the tree has to be looked at again
+            registerTree(root, batch);
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /** Registers every directory under {@code start}; files found on the way go into the batch. */
+    private void registerTree(Path start, Batch batch) {
+        IgnoreRules.Scope startScope = ignoreRules.scopeOf(start);
+        if (startScope == null)
+            return;
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                // Ignore rules of the directories being walked, innermost first
+                private final Deque<IgnoreRules.Scope> scopes = new ArrayDeque<>();
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                    if (!dir.equals(root) && isIgnored(dir))
+                        return FileVisitResult.SKIP_SUBTREE;
+                    if (scopes.isEmpty()) {
+                        scopes.push(startScope);
+                    } else if (scopes.peek().isIgnored(dir, true)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    } else {
+                        scopes.push(scopes.peek().enter(dir));
+                    }
+                    dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) {
+                    scopes.pop();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (batch != null && attrs.isRegularFile() && !isIgnored(file)
+                            && !scopes.peek().isIgnored(file, false)) {
+                        batch.changed.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    System.err.println("Cannot watch " + file + ": " + exc.getMessage());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            System.err.println("Cannot watch " + start + ": " + e.getMessage());
+        }
+    }
+
+    /** Hidden entries (like FileDiscovery) and our own output, which would otherwise feed back. */
+    private boolean isIgnored(Path path) {
+        Path name = path.getFileName();
+        return (name != null && name.toString().startsWith(".")) || path.startsWith(excluded);
+    }
+}
@@ -0,0 +1,279 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Decides which files are worth scanning, before they are opened: include /
+ * exclude by extension and glob, and size limits, all from the name and the
+ * attributes the walk already read. Binary files are found by sniffing their
+ * first bytes, the first thing a worker does with a file, so nothing binary
+ * ever reaches a decoder. Every skipped file is counted by reason for the
+ * report.
+ *
+ * Globs match the path relative to the search root (e.g. {@code docs/**});
+ * a glob without a '/' matches the file name anywhere (e.g. {@code *.min.js}).
+ */
+final class FileClassifier {
+
+    /** A byte order mark at the start of a file: the charset it names and how many bytes it takes. */
+    record Bom(Charset charset, int length) {
+    }
+
+    /** Why a file was not scanned. */
+    enum SkipReason {
+        EXCLUDED("Excluded by extension or glob"),
+        NOT_INCLUDED("Not in the include list"),
+        TOO_SMALL("Below the minimum size"),
+        TOO_LARGE("Above the maximum size"),
+        IGNORED("Ignored by .gitignore / .forbiddenignore"),
+        BINARY("Binary content");
+
+        private final String label;
+
+        SkipReason(String label) {
+            this.label = label;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    static final int SNIFF_SIZE = 4096;
+    // Share of control characters above which a file is not text
+    private static final double MAX_CONTROL_RATIO = 0.1;
+
+    private final Path root;
+    private final Set<String> includeExtensions;
+    private final Set<String> excludeExtensions;
+    private final List<PathMatcher> includeGlobs;
+    private final List<PathMatcher> excludeGlobs;
+    private final long minFileSize;
+    private final long maxFileSize;
+    private final boolean detectBinary;
+    private final boolean scanArchives; // archives are opened, not excluded or sniffed
+
+    // Indexed by SkipReason ordinal
+    private final AtomicLongArray skippedFiles = new AtomicLongArray(SkipReason.values().length);
+    private final AtomicLongArray skippedBytes = new AtomicLongArray(SkipReason.values().length);
+
+    FileClassifier(Path root, ScanOptions options) {
+        this.root = root;
+        this.includeExtensions = extensions(options.getIncludeExtensions());
+        this.excludeExtensions = extensions(options.getExcludeExtensions());
+        this.includeGlobs = globs(root.getFileSystem(), options.getIncludeGlobs());
+        this.excludeGlobs = globs(root.getFileSystem(), options.getExcludeGlobs());
+        this.minFileSize = options.getMinFileSize();
+        this.maxFileSize = options.getMaxFileSize();
+        this.detectBinary = options.isDetectBinary();
+        this.scanArchives = options.isScanArchives();
+    }
+
+    /**
+     * Classifies a file from its path and size alone. Returns false, and counts
+     * the file as skipped, if it is not to be scanned.
+     */
+    boolean accept(Path file, long size) {
+        SkipReason reason = classify(file, size);
+        if (reason == null)
+            return true;
+        skipped(reason, size);
+        return false;
+    }
+
+    /** Same verdict as {@link #accept}, without counting anything (watch rescans). */
+    boolean accepts(Path file, long size) {
+        return classify(file, size) == null;
+    }
+
+    /**
+     * Sniffs the start of the file. Returns true, and counts the file as
+     * skipped, if it looks binary.
+     */
+    boolean skipBinary(Path file, long size) throws IOException {
+        if (!isBinary(file, size))
+            return false;
+        skipped(SkipReason.BINARY, size);
+        return true;
+    }
+
+    /** Same sniff as {@link #skipBinary}, without counting anything. */
+    boolean isBinary(Path file, long size) throws IOException {
+        if (!detectBinary || size == 0 || scanArchives && ArchiveScanner.isArchive(file))
+            return false;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return looksBinary(head(channel));
+        }
+    }
+
+    /**
+     * The size and extension rules for an entry inside an archive (a size of
+     * -1 is unknown). Entries are not counted here; {@link ArchiveScanner}
+     * counts them.
+     */
+    boolean acceptEntry(String entryName, long size) {
+        if (size >= 0 && (size < minFileSize || size > maxFileSize))
+            return false;
+        String extension = extensionOf(entryName);
+        if (excludeExtensions.contains(extension))
+            return false;
+        return includeExtensions.isEmpty() || includeExtensions.contains(extension);
+    }
+
+    /** The binary sniff, on an archive entry that is already in memory. */
+    boolean isBinaryEntry(ByteBuffer content) {
+        return detectBinary && looksBinary(content.slice(0, Math.min(SNIFF_SIZE, content.limit())));
+    }
+
+    /** Counts a file the ignore files left out (see {@link IgnoreRules}). */
+    void ignored(long size) {
+        skipped(SkipReason.IGNORED, size);
+    }
+
+    long getSkippedFiles(SkipReason reason) {
+        return skippedFiles.get(reason.ordinal());
+    }
+
+    long getSkippedBytes(SkipReason reason) {
+        return skippedBytes.get(reason.ordinal());
+    }
+
+    private SkipReason classify(Path file, long size) {
+        // 1. Size, the cheapest check
+        if (size < minFileSize)
+            return SkipReason.TOO_SMALL;
+        if (size > maxFileSize)
+            return SkipReason.TOO_LARGE;
+
+        // 2. Extension; archives that are opened have their entries checked instead
+        String name = file.getFileName().toString();
+        String extension = extensionOf(name);
+        boolean archive = scanArchives && ArchiveScanner.isArchive(name);
+        if (excludeExtensions.contains(extension) && !archive)
+            return SkipReason.EXCLUDED;
+
+        // 3. Globs, on the path below the root
+        Path relative = file.startsWith(root) ? root.relativize(file) : file;
+        if (matchesAny(excludeGlobs, relative))
+            return SkipReason.EXCLUDED;
+        if (!includeExtensions.isEmpty() || !includeGlobs.isEmpty()) {
+            boolean included = archive || includeExtensions.contains(extension)
+                    || matchesAny(includeGlobs, relative);
+            if (!included)
+                return SkipReason.NOT_INCLUDED;
+        }
+        return null;
+    }
+
+    private void skipped(SkipReason reason, long size) {
+        skippedFiles.incrementAndGet(reason.ordinal());
+        skippedBytes.addAndGet(reason.ordinal(), size);
+    }
+
+    /** The first SNIFF_SIZE bytes of a file, read at their position (the channel's own is left alone). */
+    static ByteBuffer head(FileChannel channel) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate((int) Math.min(SNIFF_SIZE, channel.size()));
+        while (head.hasRemaining() && channel.read(head, head.position()) > 0) {
+            // keep reading until the sample is full or the file ends
+        }
+        return head.flip();
+    }
+
+    /** The byte order mark {@code head} starts with, or null. UTF-32 LE is checked before UTF-16 LE, its prefix. */
+    static Bom bom(ByteBuffer head) {
+        int length = head.remaining();
+        int b0 = length > 0 ? head.get(head.position()) & 0xff : -1;
+        int b1 = length > 1 ? head.get(head.position() + 1) & 0xff : -1;
+        int b2 = length > 2 ? head.get(head.position() + 2) & 0xff : -1;
+        int b3 = length > 3 ? head.get(head.position() + 3) & 0xff : -1;
+        if (b0 == 0xEF && b1 == 0xBB && b2 == 0xBF)
+            return new Bom(StandardCharsets.UTF_8, 3);
+        if (b0 == 0 && b1 == 0 && b2 == 0xFE && b3 == 0xFF)
+            return new Bom(Charset.forName("UTF-32BE"), 4);
+        if (b0 == 0xFF && b1 == 0xFE && b2 == 0 && b3 == 0)
+            return new Bom(Charset.forName("UTF-32LE"), 4);
+        if (b0 == 0xFE && b1 == 0xFF)
+            return new Bom(StandardCharsets.UTF_16BE, 2);
+        if (b0 == 0xFF && b1 == 0xFE)
+            return new Bom(StandardCharsets.UTF_16LE, 2);
+        return null;
+    }
+
+    /**
+     * True for bytes that are not text: a NUL without a UTF-16 / UTF-32 byte
+     * order mark, or too many other control characters. UTF-16 without a BOM
+     * counts as binary.
+     */
+    static boolean looksBinary(ByteBuffer head) {
+        int length = head.remaining();
+        Bom bom = bom(head);
+        if (bom != null && !bom.charset().equals(StandardCharsets.UTF_8))
+            return false; // UTF-16 / UTF-32: NULs are part of the text
+
+        int control = 0;
+        for (int i = head.position(); i < head.limit(); i++) {
+            int b = head.get(i) & 0xff;
+            if (b == 0)
+                return true;
+            // Tab, line feed, form feed, carriage return and escape are common in text
+            if (b < 0x20 && b != '\t' && b != '\n' && b != '\f' && b != '\r' && b != 0x1b && b != '\b') {
+                control++;
+            }
+        }
+        return control > length * MAX_CONTROL_RATIO;
+    }
+
+    // --- Rules ---
+
+    /** Lower case, without the dot; "" for a file without one. */
+    static String extensionOf(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static Set<String> extensions(Set<String> configured) {
+        Set<String> extensions = new HashSet<>();
+        for (String extension : configured) {
+            String normalized = extension.strip().toLowerCase(Locale.ROOT);
+            extensions.add(normalized.startsWith(".") ? normalized.substring(1) : normalized);
+        }
+        return extensions;
+    }
+
+    private static List<PathMatcher> globs(FileSystem fileSystem, List<String> patterns) {
+        List<PathMatcher> matchers = new ArrayList<>();
+        for (String pattern : patterns) {
+            PathMatcher matcher = fileSystem.getPathMatcher("glob:" + pattern);
+            if (pattern.indexOf('/') < 0) {
+                // No directory part: the file name anywhere in the tree
+                matchers.add(path -> path.getFileName() != null && matcher.matches(path.getFileName()));
+            } else {
+                matchers.add(matcher);
+            }
+        }
+        return matchers;
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path relative) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(relative))
+                return true;
+        }
+        return false;
+    }
+}
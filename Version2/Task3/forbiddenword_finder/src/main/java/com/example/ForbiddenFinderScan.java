@@ -0,0 +1,1614 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The scanning core: walks the tree with the selected ScanEngine, scans and
+ * masks the files, and writes the report. It has no UI of its own and needs
+ * no JavaFX; whoever runs it (ForbiddenFinderTask in the app, ScanCommand on
+ * the command line) gets messages, progress and new rows through a
+ * {@link Listener}.
+ */
+final class ForbiddenFinderScan {
+
+    /** What the scan reports to whoever runs it. Called from scan threads, never the FX thread. */
+    interface Listener {
+        /** The status line: progress once per frame, then how the scan ended. */
+        void message(String message);
+
+        /** Files done out of files found so far, once per frame. */
+        void progress(long done, long total);
+
+        /** Once per frame: the store has {@code storeSize} rows, and these rows were removed. */
+        void rows(int storeSize, Set<Integer> removed);
+
+        /** The scan or a watch batch is over: sorted or filtered views of the results are stale. */
+        default void resultsSettled() {
+        }
+
+        /** The first scan is over and the tree is watched from now on. */
+        default void watchStarted() {
+        }
+
+        /** A file (or archive entry) could not be scanned; called on the worker thread that tried. */
+        default void fileFailed(String file, String reason) {
+            System.err.println("Error processing file " + file + ": " + reason);
+        }
+    }
+
+    private final Path startDirectory;
+    private final Set<String> forbiddenWords;
+    private final Path outputDirectory;
+    private final ScanOptions options;
+    private final AtomicLong filesProcessed = new AtomicLong(0);
+
+    // Files with forbidden words, in columns; the report is written straight from it
+    private final ResultStore results;
+    private final Listener listener;
+    // Rows and progress reach the listener a frame at a time, not once per file
+    private UiUpdateChannel updates;
+    // Live counters over JMX while call() runs (JFR events are in ScanEvents)
+    private ScanMonitor monitor;
+
+    // Synchronization control for Pause/Resume. A ReentrantLock rather than
+    // synchronized/wait, so paused virtual threads do not pin their carrier threads.
+    private final ReentrantLock pauseLock = new ReentrantLock();
+    private final Condition resumed = pauseLock.newCondition();
+    private volatile boolean isPaused = false;
+    // Set by cancel(); the thread in run() is interrupted too, to end any wait
+    private volatile boolean cancelled = false;
+    private volatile Thread runner;
+    private final String searchDirectoryString; // Store the root path once for the report
+
+    // Compiled from forbiddenWords when the scan starts, unless the runner brought
+    // one (ScanService keeps them between jobs); shared read-only by all workers
+    private WordMatcher matcher;
+    // Where the pools come from, and whether the scan shuts them down afterwards
+    private final ScanWorkers workers;
+
+    // Set a reasonable concurrency limit, e.g., twice the available processors
+    private final int CONCURRENCY_LIMIT = Runtime.getRuntime().availableProcessors() * 2;
+    // How far the directory walk may run ahead of the workers
+    private static final int DISCOVERY_QUEUE_CAPACITY = 1024;
+    // Files per fork/join leaf task; bigger directories are split further
+    private static final int FORK_JOIN_FILE_BATCH = 8;
+
+    // Fork/join engine: files (and their bytes) found by the directory tasks
+    private final AtomicLong filesDiscovered = new AtomicLong(0);
+    private final AtomicLong bytesDiscovered = new AtomicLong(0);
+
+    // Scans the chunks of very large files in parallel, whatever the engine
+    private ExecutorService chunkPool;
+    // Caps open files and bytes in flight for the engine and for archive entries alike
+    private IoLimiter ioLimiter;
+    // Opens zip / jar / gzip files and scans their entries on chunkPool (null when they are skipped)
+    private ArchiveScanner archives;
+    // Results of earlier runs (null when the scan is not incremental)
+    private ScanIndex scanIndex;
+    // Identical files seen in this scan (null when deduplication is off)
+    private volatile DedupCache dedup;
+    // Which files are scanned at all, and how many were skipped and why
+    private FileClassifier classifier;
+    private IgnoreRules ignoreRules;
+    // When call() started, for the report's elapsed time and throughput
+    private long startNanos;
+
+    // Watch mode: the result row of every file with hits, so a change or delete can take it back
+    private final ConcurrentHashMap<Path, Integer> watchedRows = new ConcurrentHashMap<>();
+    // Quiet period that ends a batch of file system events
+    private static final long WATCH_DEBOUNCE_MILLIS = 500;
+
+    ForbiddenFinderScan(
+            Path startDirectory,
+            Set<String> forbiddenWords,
+            Path outputDirectory,
+            ScanOptions options,
+            Listener listener) {
+        this(startDirectory, forbiddenWords, null, outputDirectory, options, ScanWorkers.perScan(), listener);
+    }
+
+    /** A scan with its dictionary compiled beforehand, on pools that outlive it (ScanService). */
+    ForbiddenFinderScan(
+            Path startDirectory,
+            WordMatcher matcher,
+            Path outputDirectory,
+            ScanOptions options,
+            ScanWorkers workers,
+            Listener listener) {
+        this(startDirectory, null, matcher, outputDirectory, options, workers, listener);
+    }
+
+    private ForbiddenFinderScan(
+            Path startDirectory,
+            Set<String> forbiddenWords,
+            WordMatcher matcher,
+            Path outputDirectory,
+            ScanOptions options,
+            ScanWorkers workers,
+            Listener listener) {
+        this.startDirectory = startDirectory;
+        this.forbiddenWords = forbiddenWords;
+        this.matcher = matcher;
+        this.outputDirectory = outputDirectory;
+        this.options = options;
+        this.workers = workers;
+        this.searchDirectoryString = startDirectory.toAbsolutePath().toString();
+        this.results = new ResultStore(searchDirectoryString);
+        this.listener = listener;
+    }
+
+    /** The results, for the runner's own view of them (the table, the command line's output). */
+    ResultStore getResults() {
+        return results;
+    }
+
+    // --- Control Methods ---
+
+    void pause() {
+        isPaused = true;
+        if (updates != null) {
+            updates.holdMessages(true);
+        }
+        listener.message("Paused...");
+    }
+
+    void resume() {
+        isPaused = false;
+        pauseLock.lock();
+        try {
+            resumed.signalAll();
+        } finally {
+            pauseLock.unlock();
+        }
+        if (updates != null) {
+            updates.holdMessages(false);
+        }
+        listener.message("Searching...");
+    }
+
+    /** Stops the scan, paused or not; run() finishes the report and returns. */
+    void cancel() {
+        cancelled = true;
+        pauseLock.lock();
+        try {
+            resumed.signalAll(); // Paused workers on shared pools are not interrupted
+        } finally {
+            pauseLock.unlock();
+        }
+        Thread thread = runner;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    // --- Core Scan Logic ---
+
+    /**
+     * Runs the scan (and with watch mode, keeps watching until cancelled) on
+     * the calling thread. Returns false if there was nothing to scan.
+     */
+    boolean run() throws Exception {
+        runner = Thread.currentThread();
+        try {
+            return scan();
+        } finally {
+            runner = null;
+        }
+    }
+
+    private boolean scan() throws Exception {
+        // 1. Prepare and Validate Directory
+        if (!Files.exists(startDirectory) || !Files.isDirectory(startDirectory)) {
+            listener.message("Error: Directory not found or is not a valid directory.");
+            throw new NoSuchFileException("Directory not found: " + startDirectory);
+        }
+
+        Files.createDirectories(outputDirectory);
+        results.clear();
+        watchedRows.clear();
+        if (matcher == null) {
+            matcher = new WordMatcher(forbiddenWords);
+        }
+        classifier = new FileClassifier(startDirectory, options);
+        ignoreRules = new IgnoreRules(startDirectory, options.isUseIgnoreFiles());
+        updates = new UiUpdateChannel(results, listener::rows, listener::progress, listener::message,
+                options.isDebugLog());
+        monitor = new ScanMonitor(options.getScanEngine(), updates, results, () -> isPaused);
+        if (options.isJmxMonitor()) {
+            monitor.register();
+        }
+        // The report is written while the scan runs, so even a cancelled one leaves it
+        startNanos = System.nanoTime();
+        ReportWriter report = new ReportWriter(outputDirectory, results, options.getTopWords(), startNanos);
+        report.start();
+
+        // 2. Search with the selected engine
+        ScanEngine engine = options.getScanEngine();
+        listener.message("Starting search (" + engine + ") in: " + startDirectory.getFileName());
+        chunkPool = workers.chunkPool();
+        ioLimiter = switch (engine) {
+            case FIXED_POOL -> IoLimiter.openFilesOnly(CONCURRENCY_LIMIT);
+            case VIRTUAL_THREADS, PIPELINE -> new IoLimiter(options.getMaxOpenFiles(), options.getMaxBytesInFlight());
+            // One file at a time, or one per fork/join task: only archive entries take byte budget
+            case SEQUENTIAL, FORK_JOIN -> new IoLimiter(Integer.MAX_VALUE, options.getMaxBytesInFlight());
+        };
+        // The pipeline's budget is filled by the read stage and only freed by the match threads, which
+        // scan archives: entries waiting on it there could stall the scan, so they get a budget of their own
+        IoLimiter entryLimiter = engine == ScanEngine.PIPELINE
+                ? new IoLimiter(Integer.MAX_VALUE, options.getMaxBytesInFlight())
+                : ioLimiter;
+        archives = options.isScanArchives()
+                ? new ArchiveScanner(matcher, classifier, options, chunkPool, entryLimiter, listener::fileFailed,
+                        this::isCancelled)
+                : null;
+        scanIndex = options.isIncremental() ? ScanIndex.open(outputDirectory, matcher) : null;
+        dedup = options.isDeduplicate() ? new DedupCache() : null;
+        // Watching starts before the scan, so nothing that changes during it is missed
+        DirectoryWatcher watcher = options.isWatch()
+                ? new DirectoryWatcher(startDirectory, outputDirectory, ignoreRules)
+                : null;
+        updates.start();
+        try {
+            try {
+                switch (engine) {
+                    case SEQUENTIAL -> runSequential();
+                    case FIXED_POOL -> runPooled(workers.filePool(CONCURRENCY_LIMIT));
+                    case VIRTUAL_THREADS -> runPooled(Executors.newVirtualThreadPerTaskExecutor());
+                    case FORK_JOIN -> runForkJoin();
+                    case PIPELINE -> runPipeline();
+                }
+            } catch (InterruptedException e) {
+                // Handle cancellation or interruption while waiting for workers
+                Thread.currentThread().interrupt();
+                finishReport(report, "Cancelled");
+                return true;
+            }
+            updates.close(); // Last rows and progress, before the final message
+
+            // 3. Final Steps
+            if (isCancelled()) {
+                finishReport(report, "Cancelled");
+                listener.message("Search was cancelled. Partial report saved.");
+            } else if (filesProcessed.get() == 0 && watcher == null) {
+                finishReport(report, "Empty");
+                listener.message("Directory is empty or contains no files to process.");
+                return false;
+            } else {
+                finishReport(report, "Complete");
+                listener.resultsSettled();
+                listener.message(String.format("Search complete. %d files found with forbidden words. Report saved.",
+                        results.liveCount()));
+            }
+
+            // 4. Watch mode: keep the results up to date until the task is stopped
+            if (watcher != null && !isCancelled()) {
+                watchForChanges(watcher);
+            }
+        } finally {
+            updates.close();
+            monitor.unregister();
+            try {
+                // Every normal exit has finished it already: only a failure (or a cancel
+                // that cut one short) gets here with the report still open
+                finishReport(report, isCancelled() ? "Cancelled" : "Failed");
+            } catch (IOException e) {
+                System.err.println("Could not finish the report: " + e.getMessage());
+            }
+            workers.release(chunkPool);
+            if (watcher != null) {
+                watcher.close();
+            }
+            if (scanIndex != null) {
+                scanIndex.close(!isCancelled());
+            }
+        }
+
+        return true;
+    }
+
+    // --- Watch Mode ---
+
+    /**
+     * Rescans files as they are created or modified and takes back the results
+     * of deleted ones. Runs until the task is cancelled; the report is written
+     * again when watching stops.
+     */
+    private void watchForChanges(DirectoryWatcher watcher) throws IOException {
+        // Views show the live results from now on; rows still go through updates
+        listener.watchStarted();
+        listener.progress(1, 1);
+        updates.start();
+        updates.holdMessages(true); // Watch messages are per batch
+        ExecutorService watchPool = workers.filePool(CONCURRENCY_LIMIT);
+        try {
+            while (!isCancelled()) {
+                DirectoryWatcher.Batch batch = watcher.nextBatch(WATCH_DEBOUNCE_MILLIS);
+                checkPauseState(); // While paused, events pile up in the WatchService
+                if (batch.overflow) {
+                    // Files with results that are no longer there
+                    watchedRows.keySet().stream().filter(path -> !Files.exists(path)).forEach(batch.deleted::add);
+                }
+                if (!batch.isEmpty()) {
+                    applyBatch(batch, watchPool);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stop was pressed while waiting for events
+            Thread.currentThread().interrupt();
+        } finally {
+            workers.release(watchPool);
+            updates.close();
+        }
+
+        // Retracted rows are flagged in the store, so it holds exactly the current results
+        finishReport(new ReportWriter(outputDirectory, results, options.getTopWords(), startNanos), "Watch stopped");
+        listener.message(String.format("Watch stopped. %d files with forbidden words. Report saved.",
+                results.liveCount()));
+    }
+
+    /**
+     * Retracts everything the batch touches and rescans the files that still
+     * exist; the table picks up both with the next frame.
+     */
+    private void applyBatch(DirectoryWatcher.Batch batch, ExecutorService watchPool) throws InterruptedException {
+        // Earlier results may describe content that has changed since
+        dedup = options.isDeduplicate() ? new DedupCache() : null;
+
+        // 1. Deleted paths: a file, or a whole directory of them
+        for (Path deleted : batch.deleted) {
+            retract(deleted);
+        }
+        if (!batch.deleted.isEmpty()) {
+            for (Path known : watchedRows.keySet()) {
+                for (Path parent = known.getParent(); parent != null; parent = parent.getParent()) {
+                    if (batch.deleted.contains(parent)) {
+                        retract(known);
+                        break;
+                    }
+                }
+            }
+        }
+
+        // 2. Changed files: the old result goes, the new scan decides what comes back
+        List<Callable<OptionalInt>> scans = new ArrayList<>();
+        for (Path changed : batch.changed) {
+            retract(changed);
+            if (Files.isRegularFile(changed) && accepts(changed)) {
+                scans.add(new FileProcessorCallable(changed, true));
+            }
+        }
+        for (Future<OptionalInt> future : watchPool.invokeAll(scans)) {
+            try {
+                future.get(); // Rows with hits are in the store already
+            } catch (ExecutionException e) {
+                System.err.println("Error processing file (Execution): " + e.getCause().getMessage());
+            }
+        }
+
+        listener.resultsSettled();
+        listener.message(String.format("Watching for changes. Last batch: %d rescanned, %d removed (%d files with forbidden words).",
+                scans.size(), batch.deleted.size(), watchedRows.size()));
+    }
+
+    /**
+     * The classifier's verdict on a changed file; one that is gone by now is
+     * not scanned. The skip counts stay those of the first scan.
+     */
+    private boolean accepts(Path file) {
+        try {
+            return classifier.accepts(file, Files.size(file));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Takes a file's row, and with it its word counts, back out of the results. */
+    private void retract(Path file) {
+        Integer row = watchedRows.remove(file);
+        if (row != null) {
+            results.remove(row);
+            updates.removeRow(row);
+        }
+
+        // The rows of an archive's entries are kept under the archive, like files in a directory
+        if (archives != null && ArchiveScanner.isArchive(file)) {
+            for (Path known : watchedRows.keySet()) {
+                if (known.startsWith(file) && !known.equals(file)) {
+                    retract(known);
+                }
+            }
+        }
+    }
+
+    // --- Engine: Sequential ---
+
+    /** Scans every file on the task thread, in discovery order (the Version1 approach). */
+    private void runSequential() throws Exception {
+        FileDiscovery discovery = new FileDiscovery(startDirectory, ignoreRules, classifier, DISCOVERY_QUEUE_CAPACITY);
+        discovery.start();
+        monitor.addQueue("discovery", discovery::queued);
+        try {
+            while (!isCancelled()) {
+                checkPauseState();
+
+                Path file = discovery.take();
+                if (file == FileDiscovery.END)
+                    break;
+
+                new FileProcessorCallable(file).call();
+                filesProcessed.incrementAndGet();
+                updates.discovered(discovery.getDiscovered(), discovery.getDiscoveredBytes(), discovery.isComplete());
+            }
+        } finally {
+            discovery.stop();
+            monitor.removeQueue("discovery");
+        }
+
+        if (discovery.getFailure() != null) {
+            throw discovery.getFailure();
+        }
+    }
+
+    // --- Engines: Fixed thread pool / Virtual threads ---
+
+    /**
+     * Feeds discovered files to an executor. The limiter decides how many files
+     * are in flight: CONCURRENCY_LIMIT for the fixed pool, open files and bytes
+     * for virtual threads (one per file), where the thread count is no limit.
+     */
+    private void runPooled(ExecutorService fileProcessorExecutor) throws Exception {
+        // Start discovering files; scanning begins while the walk is still running
+        FileDiscovery discovery = new FileDiscovery(startDirectory, ignoreRules, classifier, DISCOVERY_QUEUE_CAPACITY);
+        discovery.start();
+
+        CompletionService<OptionalInt> completionService = new ExecutorCompletionService<>(
+                fileProcessorExecutor);
+        long filesSubmitted = 0;
+        // Files still on a worker, for a shared pool that cannot just be shut down
+        Phaser inFlight = new Phaser(1);
+        monitor.addQueue("discovery", discovery::queued);
+
+        try {
+            while (!isCancelled()) {
+                checkPauseState(); // Check pause status
+
+                Path file = discovery.poll(100, TimeUnit.MILLISECONDS);
+                if (file == FileDiscovery.END)
+                    break;
+
+                if (file != null) {
+                    // Acquire an open-file permit before submitting; the worker releases it when done
+                    ioLimiter.acquireFile();
+                    FileProcessorCallable processor = new FileProcessorCallable(file);
+                    inFlight.register();
+                    completionService.submit(() -> {
+                        int reservedBytes = 0;
+                        try {
+                            // An archive's entries take their own share, so the archive takes none
+                            if (archives == null || !ArchiveScanner.isArchive(file)) {
+                                reservedBytes = ioLimiter.acquireBytes(Files.size(file));
+                            }
+                            return processor.call();
+                        } finally {
+                            ioLimiter.releaseBytes(reservedBytes);
+                            ioLimiter.releaseFile();
+                            inFlight.arriveAndDeregister();
+                        }
+                    });
+                    filesSubmitted++;
+                }
+
+                // Collect whatever has finished in the meantime and update the UI
+                Future<OptionalInt> done;
+                while ((done = completionService.poll()) != null) {
+                    collectResult(done, discovery);
+                }
+            }
+
+            // The walk is over: wait for the files still in flight
+            while (!isCancelled() && filesProcessed.get() < filesSubmitted) {
+                checkPauseState();
+                collectResult(completionService.take(), discovery);
+            }
+
+        } finally {
+            discovery.stop();
+            if (!workers.release(fileProcessorExecutor)) {
+                inFlight.arriveAndAwaitAdvance(); // Cancelled: queued files return at once, running ones soon
+            }
+            monitor.removeQueue("discovery");
+        }
+
+        if (discovery.getFailure() != null) {
+            throw discovery.getFailure();
+        }
+    }
+
+    /** Counts one finished file (its row is in the store already) and reports processed vs discovered. */
+    private void collectResult(Future<OptionalInt> future, FileDiscovery discovery)
+            throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            System.err.println("Error processing file (Execution): " + e.getCause().getMessage());
+        }
+
+        filesProcessed.incrementAndGet();
+        updates.discovered(discovery.getDiscovered(), discovery.getDiscoveredBytes(), discovery.isComplete());
+    }
+
+    // --- Engine: Fork/join work stealing ---
+
+    /**
+     * Lists and scans the tree with a ForkJoinPool: every directory is a task
+     * that forks its subdirectories and scans its own files, so idle workers
+     * steal whole subtrees and lopsided trees still keep every core busy.
+     */
+    private void runForkJoin() throws Exception {
+        ForkJoinPool pool = workers.forkJoinPool();
+        filesDiscovered.set(0);
+        bytesDiscovered.set(0);
+
+        monitor.addQueue("fork/join tasks", () -> (int) Math.min(pool.getQueuedTaskCount(), Integer.MAX_VALUE));
+        ForkJoinTask<Long> root = pool.submit(new DirectoryScanTask(startDirectory, null));
+        try {
+            while (!root.isDone() && !isCancelled()) {
+                try {
+                    root.get(100, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // Still running: publish how much has been found so far
+                }
+                updates.discovered(filesDiscovered.get(), bytesDiscovered.get(), root.isDone());
+            }
+
+            if (!isCancelled()) {
+                root.get(); // Rethrows anything a directory task did not handle
+            }
+        } finally {
+            if (!workers.release(pool)) {
+                root.quietlyJoin(); // Cancelled: the directory and batch tasks check the flag
+            }
+            monitor.removeQueue("fork/join tasks");
+        }
+    }
+
+    /** One directory: lists it, forks the subdirectories, scans its files. */
+    @SuppressWarnings("serial") // ForkJoinTask is Serializable, but tasks never are serialized
+    private class DirectoryScanTask extends RecursiveTask<Long> {
+        private final Path directory;
+        private final IgnoreRules.Scope parentScope; // null for the search root
+
+        DirectoryScanTask(Path directory, IgnoreRules.Scope parentScope) {
+            this.directory = directory;
+            this.parentScope = parentScope;
+        }
+
+        @Override
+        protected Long compute() {
+            if (isCancelled())
+                return 0L;
+
+            ScanEvents.DirectoryListed listed = new ScanEvents.DirectoryListed();
+            listed.begin();
+            IgnoreRules.Scope scope = parentScope == null ? ignoreRules.rootScope() : parentScope.enter(directory);
+            List<DirectoryScanTask> subdirectories = new ArrayList<>();
+            List<Path> files = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path entry : stream) {
+                    try {
+                        // One stat per entry, same view of the tree as FileDiscovery
+                        BasicFileAttributes attrs = Files.readAttributes(entry, BasicFileAttributes.class,
+                                LinkOption.NOFOLLOW_LINKS);
+                        if (FileDiscovery.isHidden(entry, attrs))
+                            continue;
+                        if (attrs.isDirectory()) {
+                            if (scope.isIgnored(entry, true)) {
+                                ignoreRules.pruned(); // Not listed at all
+                            } else {
+                                subdirectories.add(new DirectoryScanTask(entry, scope));
+                            }
+                        } else if (attrs.isRegularFile()) {
+                            if (scope.isIgnored(entry, false)) {
+                                classifier.ignored(attrs.size());
+                            } else if (classifier.accept(entry, attrs.size())) {
+                                files.add(entry);
+                                bytesDiscovered.addAndGet(attrs.size());
+                            }
+                        }
+                    } catch (IOException e) {
+                        System.err.println("Cannot access " + entry + ": " + e.getMessage());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("Cannot list " + directory + ": " + e.getMessage());
+                return 0L;
+            }
+            filesDiscovered.addAndGet(files.size());
+            if (listed.shouldCommit()) {
+                listed.path = directory.toString();
+                listed.files = files.size();
+                listed.commit();
+            }
+
+            // Subdirectories go to this worker's deque, where idle workers can steal them
+            for (DirectoryScanTask subdirectory : subdirectories) {
+                subdirectory.fork();
+            }
+            long processed = new FileBatchTask(files, 0, files.size()).compute();
+            for (int i = subdirectories.size() - 1; i >= 0; i--) {
+                processed += subdirectories.get(i).join();
+            }
+            return processed;
+        }
+    }
+
+    /** A range of one directory's files, split in halves until it is small enough. */
+    @SuppressWarnings("serial")
+    private class FileBatchTask extends RecursiveTask<Long> {
+        private final List<Path> files;
+        private final int from;
+        private final int to;
+
+        FileBatchTask(List<Path> files, int from, int to) {
+            this.files = files;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Long compute() {
+            if (to - from > FORK_JOIN_FILE_BATCH) {
+                int middle = (from + to) >>> 1;
+                FileBatchTask left = new FileBatchTask(files, from, middle);
+                left.fork();
+                long processed = new FileBatchTask(files, middle, to).compute();
+                return processed + left.join();
+            }
+
+            long processed = 0;
+            for (int i = from; i < to && !isCancelled(); i++) {
+                try {
+                    new FileProcessorCallable(files.get(i)).call();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    listener.fileFailed(files.get(i).toString(), e.toString());
+                }
+                filesProcessed.incrementAndGet();
+                processed++;
+            }
+            return processed;
+        }
+    }
+
+    // --- Engine: Staged pipeline ---
+
+    /**
+     * Read, match and write stages, each on its own threads with a bounded
+     * queue in front. Readers do the index / dedup lookups and load whole files
+     * (within the byte budget), matchers only burn CPU, and writers publish the
+     * output from memory, so no file is read twice. Files too big to hold or
+     * that need charset decoding take the regular path on a match thread.
+     */
+    private void runPipeline() throws Exception {
+        FileDiscovery discovery = new FileDiscovery(startDirectory, ignoreRules, classifier, DISCOVERY_QUEUE_CAPACITY);
+        BlockingQueue<FileProcessorCallable> toMatch = new ArrayBlockingQueue<>(options.getStageQueueCapacity());
+        BlockingQueue<FileProcessorCallable> toWrite = new ArrayBlockingQueue<>(options.getStageQueueCapacity());
+        CountDownLatch readersDone = new CountDownLatch(options.getReadThreads());
+        CountDownLatch matchersDone = new CountDownLatch(options.getMatchThreads());
+        CountDownLatch writersDone = new CountDownLatch(options.getWriteThreads());
+        ExecutorService readPool = workers.stagePool(options.getReadThreads());
+        ExecutorService matchPool = workers.stagePool(options.getMatchThreads());
+        ExecutorService writePool = workers.stagePool(options.getWriteThreads());
+        discovery.start();
+        monitor.addQueue("discovery", discovery::queued);
+        monitor.addQueue("to match", toMatch::size);
+        monitor.addQueue("to write", toWrite::size);
+
+        try {
+            for (int i = 0; i < options.getReadThreads(); i++) {
+                readPool.execute(() -> runStage(readersDone, () -> readStage(discovery, toMatch, ioLimiter)));
+            }
+            for (int i = 0; i < options.getMatchThreads(); i++) {
+                matchPool.execute(() -> runStage(matchersDone, () -> matchStage(toMatch, readersDone, toWrite)));
+            }
+            for (int i = 0; i < options.getWriteThreads(); i++) {
+                writePool.execute(() -> runStage(writersDone, () -> writeStage(toWrite, matchersDone)));
+            }
+
+            // The task thread only publishes the walk and the depth of every queue
+            while (!writersDone.await(100, TimeUnit.MILLISECONDS)) {
+                updates.discovered(discovery.getDiscovered(), discovery.getDiscoveredBytes(), discovery.isComplete());
+                updates.setDetail(String.format("Queues: to match %d/%d, to write %d/%d, %s in memory",
+                        toMatch.size(), options.getStageQueueCapacity(),
+                        toWrite.size(), options.getStageQueueCapacity(),
+                        ReportEntry.formatSize(ioLimiter.bytesInFlight())));
+            }
+            updates.discovered(discovery.getDiscovered(), discovery.getDiscoveredBytes(), true);
+            updates.setDetail(null);
+        } finally {
+            discovery.stop();
+            // Stage loops on shared threads see the cancel flag within one poll
+            if (!workers.release(readPool)) {
+                awaitUninterruptibly(readersDone);
+            }
+            if (!workers.release(matchPool)) {
+                awaitUninterruptibly(matchersDone);
+            }
+            if (!workers.release(writePool)) {
+                awaitUninterruptibly(writersDone);
+            }
+            monitor.removeQueue("discovery");
+            monitor.removeQueue("to match");
+            monitor.removeQueue("to write");
+        }
+
+        if (discovery.getFailure() != null) {
+            throw discovery.getFailure();
+        }
+    }
+
+    /** Waits for the latch even if the scan thread was interrupted by cancel(); keeps the interrupt. */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** A stage loop that may be interrupted; counts down its latch however it ends. */
+    private interface StageLoop {
+        void run() throws InterruptedException;
+    }
+
+    private void runStage(CountDownLatch done, StageLoop loop) {
+        try {
+            loop.run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            // Files catch their own failures; this is a bug in the stage loop itself
+            System.err.println("Pipeline stage failed: " + e);
+        } finally {
+            done.countDown();
+        }
+    }
+
+    /** Read stage: stat, index and dedup lookups, then the whole file into memory. */
+    private void readStage(FileDiscovery discovery, BlockingQueue<FileProcessorCallable> toMatch,
+            IoLimiter ioLimiter) throws InterruptedException {
+        while (!isCancelled()) {
+            checkPauseState();
+
+            Path file = discovery.poll(100, TimeUnit.MILLISECONDS);
+            if (file == FileDiscovery.END || (file == null && discovery.isComplete()))
+                return; // Whoever takes END ends; the others find the walk complete and the queue empty
+            if (file == null)
+                continue;
+
+            FileProcessorCallable processor = new FileProcessorCallable(file);
+            boolean handedOff = false;
+            try {
+                if (processor.lookUp() != null) {
+                    completeFile(processor);
+                    continue;
+                }
+                processor.readContent(ioLimiter); // false: the match stage takes the regular path
+                handedOff = handOff(toMatch, processor);
+            } catch (IOException | RuntimeException e) {
+                processor.fail(e);
+                completeFile(processor);
+            } finally {
+                if (!handedOff) {
+                    processor.releaseContent(); // The bytes go back to the budget however the file ended
+                }
+            }
+        }
+    }
+
+    /** Match stage: counts and locates the matches of a file in memory. */
+    private void matchStage(BlockingQueue<FileProcessorCallable> toMatch, CountDownLatch readersDone,
+            BlockingQueue<FileProcessorCallable> toWrite) throws InterruptedException {
+        while (!isCancelled()) {
+            checkPauseState();
+
+            FileProcessorCallable processor = toMatch.poll(100, TimeUnit.MILLISECONDS);
+            if (processor == null) {
+                if (readersDone.getCount() == 0 && toMatch.isEmpty())
+                    return;
+                continue;
+            }
+
+            boolean handedOff = false;
+            try {
+                if (!processor.hasContent()) {
+                    processor.scan();
+                    completeFile(processor);
+                } else if (processor.matchContent() > 0) {
+                    handedOff = handOff(toWrite, processor);
+                } else {
+                    // Most files: nothing to write, done here (finish() may hash the content, so it is
+                    // released after, by the finally)
+                    processor.finish(OptionalInt.empty());
+                    completeFile(processor);
+                }
+            } catch (IOException | RuntimeException e) {
+                processor.fail(e);
+                completeFile(processor);
+            } finally {
+                if (!handedOff) {
+                    processor.releaseContent();
+                }
+            }
+        }
+    }
+
+    /** Write stage: output files straight from the bytes the read stage loaded. */
+    private void writeStage(BlockingQueue<FileProcessorCallable> toWrite, CountDownLatch matchersDone)
+            throws InterruptedException {
+        while (!isCancelled()) {
+            checkPauseState();
+
+            FileProcessorCallable processor = toWrite.poll(100, TimeUnit.MILLISECONDS);
+            if (processor == null) {
+                if (matchersDone.getCount() == 0 && toWrite.isEmpty())
+                    return;
+                continue;
+            }
+
+            try {
+                processor.writeContent();
+                completeFile(processor);
+            } catch (IOException | RuntimeException e) {
+                processor.fail(e);
+                completeFile(processor);
+            } finally {
+                processor.releaseContent();
+            }
+        }
+    }
+
+    /**
+     * Puts a file on the next stage's queue; returns false if the scan was
+     * cancelled meanwhile, and the file (with its memory) stays with the caller.
+     */
+    private boolean handOff(BlockingQueue<FileProcessorCallable> queue, FileProcessorCallable processor)
+            throws InterruptedException {
+        while (!queue.offer(processor, 100, TimeUnit.MILLISECONDS)) {
+            if (isCancelled())
+                return false;
+        }
+        return true;
+    }
+
+    private void completeFile(FileProcessorCallable processor) {
+        filesProcessed.incrementAndGet();
+        processor.reportDone();
+    }
+
+    // --- File Processor (Callable for the thread pool) ---
+
+    /**
+     * This class handles the processing of a single file on a worker thread.
+     */
+    private class FileProcessorCallable implements Callable<OptionalInt> {
+        private final Path filePath;
+        private final boolean rescan; // watch mode
+        private final long[] hits = new long[matcher.size()];
+        private long fileSize;
+        private long modified;
+        private DedupCache.Claim claim; // null when deduplication is off
+        private long contentHash = -1;  // -1 until something has hashed the file
+        private Path published; // the .replaced or .patch file written for this file
+        private boolean archive = false; // its entries are scanned (ArchiveScanner), not the file
+
+        // Profiling: the JFR event of this file, its read and match time, the output being written
+        private final ScanEvents.FileScanned scanEvent = new ScanEvents.FileScanned();
+        private boolean started = false;
+        private long readNanos = 0;
+        private long matchNanos = 0;
+        private ScanEvents.OutputWritten outputEvent;
+
+        // Pipeline engine only: the file in memory and where its matches are
+        private ByteBuffer content;
+        private int reservedBytes;
+        private IoLimiter contentLimiter;
+        private PatchFile.MatchList matches;
+
+        // Decoded path: the charset of the file, and whether it starts with a byte order mark
+        private Charset decodedCharset = StandardCharsets.UTF_8;
+        private boolean decodedBom = false;
+
+        public FileProcessorCallable(Path filePath) {
+            this(filePath, false);
+        }
+
+        /** A {@code rescan} (watch mode) leaves the counts of the first scan, and so its report, alone. */
+        FileProcessorCallable(Path filePath, boolean rescan) {
+            this.filePath = filePath;
+            this.rescan = rescan;
+        }
+
+        @Override
+        public OptionalInt call() throws Exception {
+            // Worker threads must respect global state (Pause/Cancel)
+            if (isCancelled())
+                return OptionalInt.empty();
+
+            // Check global pause state
+            checkPauseState();
+
+            try {
+                OptionalInt known = lookUp();
+                return known != null ? known : scan();
+            } catch (IOException | RuntimeException e) {
+                // One bad file never takes its worker (or the scan) down with it
+                fail(e);
+                return OptionalInt.empty();
+            } finally {
+                reportDone();
+            }
+        }
+
+        /** Counts the file (and its bytes) in the progress of the next frame. */
+        void reportDone() {
+            if (!rescan) {
+                updates.fileDone(filePath.getFileName().toString(), fileSize);
+            }
+            if (!started)
+                return;
+            monitor.fileFinished();
+            if (scanEvent.shouldCommit()) {
+                scanEvent.path = filePath.toString();
+                scanEvent.bytes = fileSize;
+                scanEvent.matches = Arrays.stream(hits).sum();
+                scanEvent.readTime = readNanos;
+                scanEvent.matchTime = matchNanos;
+                scanEvent.commit();
+            }
+        }
+
+        /**
+         * Everything before the scan: size and mtime, the index, identical files.
+         * Returns the result if no scan is needed, or null.
+         */
+        OptionalInt lookUp() throws IOException, InterruptedException {
+            started = true;
+            scanEvent.begin();
+            monitor.fileStarted();
+
+            // Calculate file size for the report
+            BasicFileAttributes attrs = Files.readAttributes(filePath, BasicFileAttributes.class);
+            fileSize = attrs.size();
+            modified = attrs.lastModifiedTime().toMillis();
+
+            // An archive has a row per entry, which the index and dedup cannot give back: always opened
+            archive = archives != null && ArchiveScanner.isArchive(filePath);
+            if (archive)
+                return null;
+
+            // Incremental run: an unchanged file's result comes straight from the index
+            if (scanIndex != null) {
+                ScanIndex.Entry cached = scanIndex.lookup(filePath, fileSize, modified);
+                if (cached != null && (cached.count == 0 || Files.exists(replacedFile())
+                        || Files.exists(patchFile()))) {
+                    return fromIndex(cached);
+                }
+            }
+
+            // Not text: nothing to scan (read before any decoder sees the file)
+            if (rescan ? classifier.isBinary(filePath, fileSize) : classifier.skipBinary(filePath, fileSize)) {
+                return OptionalInt.empty();
+            }
+
+            // Identical to a file that is (being) scanned: take its result instead
+            claim = dedup != null ? dedup.claim(filePath, fileSize) : null;
+            if (claim != null) {
+                contentHash = claim.getContentHash();
+                if (claim.isDuplicate()) {
+                    DedupCache.Result first = claim.await();
+                    if (first != null && !isCancelled()) {
+                        OptionalInt result = fromDuplicate(first, fileSize, hits);
+                        dedup.recordDuplicate(fileSize);
+                        finish(result);
+                        return result;
+                    }
+                    // Otherwise the first copy did not finish: scan this one
+                }
+            }
+            return null;
+        }
+
+        /** The regular scan, after {@link #lookUp} returned null. */
+        OptionalInt scan() throws IOException, InterruptedException {
+            OptionalInt result = null;
+            try {
+                result = scanFile(fileSize, hits);
+                return result;
+            } finally {
+                finish(result);
+            }
+        }
+
+        /**
+         * Everything after the scan: the result goes to duplicates waiting on this
+         * file and to the index. A null result means the scan did not finish.
+         */
+        void finish(OptionalInt result) throws IOException {
+            DedupCache.Result scanned = null;
+            if (result != null && !isCancelled()) {
+                long count = result.isPresent() ? results.count(result.getAsInt()) : 0;
+                scanned = new DedupCache.Result(filePath, count, hits, result.isPresent() ? published : null);
+            }
+            // Duplicates waiting on this file scan it themselves if there is no result
+            if (claim != null) {
+                claim.complete(scanned);
+            }
+
+            if (result != null && scanIndex != null && !archive && !isCancelled()) {
+                if (contentHash == -1) {
+                    // The file was just read, so hashing it comes from memory or the page cache
+                    contentHash = content != null ? ContentHash.of(content) : ContentHash.of(filePath);
+                }
+                scanIndex.record(filePath, fileSize, modified, contentHash, matcher, hits);
+            }
+        }
+
+        /** A file that could not be processed: reported, and duplicates waiting on it scan themselves. */
+        void fail(Exception e) {
+            listener.fileFailed(filePath.toString(), e instanceof IOException ? e.getMessage() : e.toString());
+            if (claim != null) {
+                claim.complete(null);
+            }
+        }
+
+        // --- Pipeline stages ---
+
+        /**
+         * Read stage: loads the whole file into memory within the limiter's byte
+         * budget. Returns false (and loads nothing) for files that are chunked or
+         * that need charset decoding; those take the regular {@link #scan}.
+         */
+        boolean readContent(IoLimiter ioLimiter) throws IOException, InterruptedException {
+            if (archive || fileSize >= options.getChunkThreshold() || fileSize > options.getMaxBytesInFlight()
+                    || fileSize > Integer.MAX_VALUE - 8)
+                return false;
+
+            reservedBytes = ioLimiter.acquireBytes(fileSize);
+            contentLimiter = ioLimiter;
+            long readStart = System.nanoTime();
+            ByteBuffer buffer = ByteBuffer.allocate((int) fileSize);
+            try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                    // read until the buffer is full or the file ends
+                }
+            } catch (IOException e) {
+                releaseContent();
+                throw e;
+            }
+            buffer.flip();
+            readNanos = System.nanoTime() - readStart;
+
+            if (!MappedFileScanner.isByteScannable(buffer)) {
+                releaseContent();
+                return false;
+            }
+            content = buffer;
+            return true;
+        }
+
+        boolean hasContent() {
+            return content != null;
+        }
+
+        /** Match stage: counts the matches and remembers where they are. */
+        long matchContent() throws IOException {
+            matches = new PatchFile.MatchList();
+            long matchStart = System.nanoTime();
+            try {
+                return matcher.scanBytes(content, 0, content.limit(), hits,
+                        (start, end, wordId) -> matches.onMatch(start, end - start, wordId));
+            } finally {
+                matchNanos = System.nanoTime() - matchStart;
+            }
+        }
+
+        /** Write stage: the same output as the regular path, written from memory. */
+        OptionalInt writeContent() throws IOException {
+            OptionalInt result = null;
+            try {
+                if (isCancelled())
+                    return OptionalInt.empty();
+
+                Path tempFile = newTempOutput();
+                try {
+                    if (options.getOutputMode() == OutputMode.PATCH_SIDECAR) {
+                        // 1. Write the patch
+                        contentHash = contentHash != -1 ? contentHash : ContentHash.of(content);
+                        PatchFile.write(tempFile, filePath, fileSize, contentHash, matcher, matches);
+                        publish(tempFile, patchFile());
+                    } else {
+                        // 1. Write the replacement file
+                        try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                            writeMasked(out, content, matches);
+                        }
+                        publishReplaced(tempFile);
+
+                        // 2. Copy the original file, from memory
+                        ScanEvents.OutputWritten copyEvent = new ScanEvents.OutputWritten();
+                        copyEvent.begin();
+                        try (FileChannel out = FileChannel.open(copiedFile(), StandardOpenOption.CREATE,
+                                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                            writeFully(out, content.duplicate());
+                        }
+                        ScanEvents.outputWritten(copyEvent, copiedFile(), "original copy");
+                    }
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+
+                // 3. Update stats and return the result row
+                result = OptionalInt.of(recordHit(matches.size(), fileSize, hits, "Pipeline"));
+                return result;
+            } finally {
+                finish(result);
+            }
+        }
+
+        /** Hands the file's memory back to the byte budget. */
+        void releaseContent() {
+            if (contentLimiter != null) {
+                contentLimiter.releaseBytes(reservedBytes);
+                contentLimiter = null;
+            }
+            content = null;
+        }
+
+        /** Content from memory with every match masked: the gaps between matches, and the mask. */
+        private void writeMasked(FileChannel out, ByteBuffer content, PatchFile.MatchList matches)
+                throws IOException {
+            ByteBuffer mask = ByteBuffer.wrap(WordMatcher.MASK.getBytes(StandardCharsets.US_ASCII));
+            int copied = 0;
+            for (int i = 0; i < matches.size(); i++) {
+                int start = (int) matches.offset(i);
+                writeFully(out, content.slice(copied, start - copied));
+                writeFully(out, mask.rewind());
+                copied = start + matches.length(i);
+            }
+            writeFully(out, content.slice(copied, content.limit() - copied));
+        }
+
+        private void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+
+        private OptionalInt scanFile(long fileSize, long[] hits) throws IOException, InterruptedException {
+            if (archive)
+                return scanArchive(hits);
+            boolean chunked = fileSize >= options.getChunkThreshold();
+            if (options.getOutputMode() == OutputMode.PATCH_SIDECAR) {
+                try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                    if (MappedFileScanner.isByteScannable(channel)) {
+                        return scanToPatch(channel, fileSize, hits, chunked);
+                    }
+                }
+                // Byte offsets need byte scanning: decoded files get full copies
+            } else if (chunked || options.getScanMode() == ScanMode.MAPPED_BYTES) {
+                try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.READ)) {
+                    if (MappedFileScanner.isByteScannable(channel)) {
+                        return chunked ? scanChunked(channel, fileSize, hits) : scanMapped(channel, fileSize, hits);
+                    }
+                }
+                // Needs charset decoding: fall back to the reader path
+            }
+            return scanDecoded(fileSize, hits);
+        }
+
+        /** Rebuilds the result row and word stats of an unchanged file from its index entry. */
+        private OptionalInt fromIndex(ScanIndex.Entry cached) {
+            if (cached.count == 0)
+                return OptionalInt.empty();
+
+            int row = results.add(filePath, (int) cached.count, cached.size, "Index (unchanged)",
+                    cached.words, cached.wordCounts);
+            if (options.isWatch()) {
+                watchedRows.put(watchKey(), row);
+            }
+            return OptionalInt.of(row);
+        }
+
+        /** A copy of an already scanned file: same counts, masked output copied instead of recomputed. */
+        private OptionalInt fromDuplicate(DedupCache.Result first, long fileSize, long[] hits)
+                throws IOException {
+            if (first.count == 0)
+                return OptionalInt.empty();
+
+            System.arraycopy(first.hits, 0, hits, 0, hits.length);
+
+            // 1. Reuse the output (same name means it is already there)
+            if (first.replaced.getFileName().toString().endsWith(PatchFile.SUFFIX)) {
+                Path tempFile = newTempOutput();
+                try {
+                    PatchFile.retarget(first.replaced, filePath, tempFile);
+                    publish(tempFile, patchFile());
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+            } else if (!first.replaced.equals(replacedFile())) {
+                Path tempFile = newTempOutput();
+                try {
+                    Files.copy(first.replaced, tempFile, StandardCopyOption.REPLACE_EXISTING);
+                    publishReplaced(tempFile);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+
+                // 2. Copy the original file
+                copyOriginal();
+            }
+
+            // 3. Update stats and return the result row
+            return OptionalInt.of(recordHit(first.count, fileSize, hits,
+                    "Duplicate of " + first.source.getFileName()));
+        }
+
+        private OptionalInt scanDecoded(long fileSize, long[] hits) throws IOException {
+            long replacementsCount = 0;
+
+            // The masked text is streamed to a temp file, one line at a time
+            Path tempFile = newTempOutput();
+            try {
+                long matchStart = System.nanoTime();
+                try (InputStream in = new BufferedInputStream(Files.newInputStream(filePath));
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(in, charsetOf(in)));
+                        BufferedWriter writer = Files.newBufferedWriter(tempFile, decodedCharset)) {
+                    if (decodedBom) {
+                        writer.write('\uFEFF'); // The masked copy keeps the original's encoding and BOM
+                    }
+                    StringBuilder maskedLine = new StringBuilder();
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (isCancelled())
+                            return OptionalInt.empty();
+
+                        // Count, attribute and mask every forbidden word in one pass
+                        maskedLine.setLength(0);
+                        replacementsCount += matcher.maskLine(line, maskedLine, hits);
+                        writer.append(maskedLine).append(System.lineSeparator());
+                    }
+                }
+                matchNanos = System.nanoTime() - matchStart;
+
+                if (replacementsCount > 0) {
+                    // File processing and reporting (Your Step 2: if found -> put in report)
+
+                    // 1. Move the replacement file into place
+                    publishReplaced(tempFile);
+
+                    // 2. Copy the original file
+                    copyOriginal();
+
+                    // 3. Update stats and return the result row
+                    return OptionalInt.of(recordHit(replacementsCount, fileSize, hits, ScanMode.DECODED.toString()));
+                }
+
+                // Your Step 2: if no found -> ignore that file
+                return OptionalInt.empty();
+
+            } finally {
+                // Still there if nothing matched, the scan was cancelled or failed
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        /**
+         * The charset its byte order mark names (the BOM is skipped), or UTF-8.
+         * Sets decodedCharset and decodedBom for the masked copy.
+         */
+        private CharsetDecoder charsetOf(InputStream in) throws IOException {
+            in.mark(4);
+            byte[] head = in.readNBytes(4);
+            in.reset();
+            FileClassifier.Bom bom = FileClassifier.bom(ByteBuffer.wrap(head));
+            decodedCharset = bom != null ? bom.charset() : StandardCharsets.UTF_8;
+            decodedBom = bom != null;
+            if (bom != null) {
+                in.skipNBytes(bom.length());
+            }
+            // Reports malformed input, as Files.newBufferedReader does
+            return decodedCharset.newDecoder();
+        }
+
+        private OptionalInt scanMapped(FileChannel channel, long fileSize, long[] hits) throws IOException {
+            // First pass only counts: most files have no hits and need no output at all
+            long matchStart = System.nanoTime();
+            long replacementsCount = MappedFileScanner.scan(channel, matcher, hits, null,
+                    ForbiddenFinderScan.this::isCancelled);
+            matchNanos = System.nanoTime() - matchStart;
+
+            if (replacementsCount > 0) {
+                // 1. Write the replacement file straight from the mapping (pages are still cached)
+                Path tempFile = newTempOutput();
+                try {
+                    try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                        MappedFileScanner.scan(channel, matcher, null, out, () -> false);
+                    }
+                    publishReplaced(tempFile);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+
+                // 2. Copy the original file
+                copyOriginal();
+
+                // 3. Update stats and return the result row
+                return OptionalInt.of(recordHit(replacementsCount, fileSize, hits, ScanMode.MAPPED_BYTES.toString()));
+            }
+
+            // Nothing found (or cancelled): ignore that file
+            return OptionalInt.empty();
+        }
+
+        /** Files above the chunk threshold: chunks are counted and masked in parallel on chunkPool. */
+        private OptionalInt scanChunked(FileChannel channel, long fileSize, long[] hits)
+                throws IOException, InterruptedException {
+            ChunkedFileScanner chunks = new ChunkedFileScanner(channel, matcher, options.getChunkSize(), chunkPool,
+                    ForbiddenFinderScan.this::isCancelled);
+            long matchStart = System.nanoTime();
+            long replacementsCount = chunks.count(hits);
+            matchNanos = System.nanoTime() - matchStart;
+
+            if (replacementsCount > 0) {
+                // 1. Write the replacement file, each masked chunk at its own offset
+                Path tempFile = newTempOutput();
+                try {
+                    try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                        chunks.writeMasked(out);
+                    }
+                    publishReplaced(tempFile);
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+
+                // 2. Copy the original file
+                copyOriginal();
+
+                // 3. Update stats and return the result row
+                String path = ScanMode.MAPPED_BYTES + ", " + chunks.chunkCount() + " chunks";
+                return OptionalInt.of(recordHit(replacementsCount, fileSize, hits, path));
+            }
+
+            // Nothing found (or cancelled): ignore that file
+            return OptionalInt.empty();
+        }
+
+        /**
+         * Patch output: one byte-level pass collects the match positions; only a
+         * file with matches gets a .patch, and nothing else is written for it.
+         */
+        private OptionalInt scanToPatch(FileChannel channel, long fileSize, long[] hits, boolean chunked)
+                throws IOException, InterruptedException {
+            PatchFile.MatchList matches = new PatchFile.MatchList();
+            long replacementsCount;
+            String path = "Patch";
+            long matchStart = System.nanoTime();
+            // The file is hashed in the same pass that matches it, never read again for the patch or the index
+            if (chunked) {
+                ChunkedFileScanner chunks = new ChunkedFileScanner(channel, matcher, options.getChunkSize(), chunkPool,
+                        ForbiddenFinderScan.this::isCancelled);
+                replacementsCount = chunks.collectMatches(hits, matches);
+                contentHash = replacementsCount >= 0 ? chunks.contentHash() : contentHash;
+                path += ", " + chunks.chunkCount() + " chunks";
+            } else {
+                ContentHash.Accumulator hash = new ContentHash.Accumulator();
+                replacementsCount = MappedFileScanner.scanMatches(channel, 0, fileSize, matcher, hits, matches, hash,
+                        ForbiddenFinderScan.this::isCancelled);
+                contentHash = replacementsCount >= 0 ? hash.value() : contentHash;
+            }
+            matchNanos = System.nanoTime() - matchStart;
+
+            if (replacementsCount > 0) {
+                // 1. Write the patch (the source hash lets a rebuild detect a changed file)
+                Path tempFile = newTempOutput();
+                try {
+                    PatchFile.write(tempFile, filePath, fileSize, contentHash, matcher, matches);
+                    publish(tempFile, patchFile());
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+
+                // 2. Update stats and return the result row
+                return OptionalInt.of(recordHit(replacementsCount, fileSize, hits, path));
+            }
+
+            // Nothing found (or cancelled): ignore that file
+            return OptionalInt.empty();
+        }
+
+        /**
+         * Archives: the entries are scanned across chunkPool, and every entry with
+         * matches gets its own row and masked output as soon as it is found.
+         */
+        private OptionalInt scanArchive(long[] hits) throws IOException, InterruptedException {
+            long matchStart = System.nanoTime();
+            archives.scan(filePath, hits, this::recordEntry);
+            matchNanos = System.nanoTime() - matchStart;
+
+            // The rows are the entries'; the archive itself has none
+            return OptionalInt.empty();
+        }
+
+        /** One archive entry with matches, on the thread that scanned it (many at once per archive). */
+        private void recordEntry(String entryPath, ByteBuffer entry, PatchFile.MatchList matches, long[] entryHits)
+                throws IOException {
+            // 1. Write the masked entry; the original stays in the archive, so nothing is copied
+            ScanEvents.OutputWritten event = new ScanEvents.OutputWritten();
+            event.begin();
+            Path target = outputDirectory.resolve(
+                    entryPath.replace(ArchiveScanner.SEPARATOR, "!").replace('/', '_') + ".replaced");
+            Path tempFile = Files.createTempFile(outputDirectory, ".replaced-", ".tmp");
+            try {
+                try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                    writeMasked(out, entry, matches);
+                }
+                moveIntoPlace(tempFile, target);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+            ScanEvents.outputWritten(event, target, "masked entry");
+
+            // 2. Update stats: the row is the entry, listed in the archive's directory
+            String[] words = wordsOf(entryHits);
+            int row = results.add(filePath.getParent(), entryPath, matches.size(), entry.limit(), "Archive entry",
+                    words, countsOf(entryHits, words.length));
+            if (options.isWatch()) {
+                String inside = entryPath.substring(filePath.getFileName().toString().length()
+                        + ArchiveScanner.SEPARATOR.length());
+                watchedRows.put(watchKey().resolve(inside), row);
+            }
+        }
+
+        /** A temp file for the next output; its OutputWritten event starts here and ends in {@link #publish}. */
+        private Path newTempOutput() throws IOException {
+            outputEvent = new ScanEvents.OutputWritten();
+            outputEvent.begin();
+            return Files.createTempFile(outputDirectory, ".replaced-", ".tmp");
+        }
+
+        private void publishReplaced(Path tempFile) throws IOException {
+            publish(tempFile, replacedFile());
+        }
+
+        /** Renames a finished temp file to its final name, so readers never see a partial file. */
+        private void publish(Path tempFile, Path target) throws IOException {
+            moveIntoPlace(tempFile, target);
+            published = target;
+            if (outputEvent != null) {
+                ScanEvents.outputWritten(outputEvent,
+                        target, target.getFileName().toString().endsWith(PatchFile.SUFFIX) ? "patch" : "masked");
+                outputEvent = null;
+            }
+        }
+
+        private void moveIntoPlace(Path tempFile, Path target) throws IOException {
+            try {
+                Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private void copyOriginal() throws IOException {
+            ScanEvents.OutputWritten copyEvent = new ScanEvents.OutputWritten();
+            copyEvent.begin();
+            Files.copy(filePath, copiedFile(), StandardCopyOption.REPLACE_EXISTING);
+            ScanEvents.outputWritten(copyEvent, copiedFile(), "original copy");
+        }
+
+        private Path copiedFile() {
+            return outputDirectory.resolve(filePath.getFileName().toString());
+        }
+
+        private Path replacedFile() {
+            return outputDirectory.resolve(filePath.getFileName().toString() + ".replaced");
+        }
+
+        private Path patchFile() {
+            return outputDirectory.resolve(filePath.getFileName().toString() + PatchFile.SUFFIX);
+        }
+
+        /** Adds the file to the result store (the table shows it with the next frame); returns its row. */
+        private int recordHit(long replacementsCount, long fileSize, long[] hits, String path) {
+            // The per-word counts go in with the row: word stats are summed from the store for
+            // the report, so workers share no counters
+            String[] words = wordsOf(hits);
+            int row = results.add(filePath, (int) replacementsCount, fileSize, path, words, countsOf(hits, words.length));
+            if (options.isWatch()) {
+                watchedRows.put(watchKey(), row);
+            }
+            return row;
+        }
+
+        /** The same path form DirectoryWatcher reports, whichever engine found the file. */
+        private Path watchKey() {
+            return filePath.toAbsolutePath().normalize();
+        }
+    }
+
+    /** The words a file actually contained, in word id order. */
+    private String[] wordsOf(long[] hits) {
+        int found = 0;
+        for (long hit : hits) {
+            if (hit > 0)
+                found++;
+        }
+        String[] words = new String[found];
+        for (int id = 0, i = 0; id < hits.length; id++) {
+            if (hits[id] > 0) {
+                words[i++] = matcher.word(id);
+            }
+        }
+        return words;
+    }
+
+    /** The counts of the words a file contained, in the order of {@link #wordsOf}. */
+    private long[] countsOf(long[] hits, int found) {
+        long[] counts = new long[found];
+        for (int id = 0, i = 0; id < hits.length; id++) {
+            if (hits[id] > 0) {
+                counts[i++] = hits[id];
+            }
+        }
+        return counts;
+    }
+
+    // --- Pause/Resume Synchronization ---
+    private void checkPauseState() throws InterruptedException {
+        pauseLock.lock();
+        try {
+            while (isPaused && !cancelled) {
+                resumed.await();
+            }
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    // --- Report Generation (Writes to file) ---
+
+    /** Ends a report with its summary; does nothing if it is already finished. */
+    private void finishReport(ReportWriter report, String status) throws IOException {
+        // Binary files were only sniffed, not scanned
+        long binaryFiles = classifier.getSkippedFiles(FileClassifier.SkipReason.BINARY);
+        long binaryBytes = classifier.getSkippedBytes(FileClassifier.SkipReason.BINARY);
+        report.close(new ReportWriter.Summary(status, filesProcessed.get() - binaryFiles,
+                updates.getBytesDone() - binaryBytes, dedup, classifier, ignoreRules, archives));
+    }
+}
@@ -0,0 +1,303 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * .gitignore-style ignore files: a {@code .forbiddenignore} in the search root
+ * and a {@code .gitignore} in any directory, with the usual syntax (comments,
+ * {@code !} to re-include, a trailing {@code /} for directories only, a
+ * {@code /} elsewhere to anchor the pattern to the file's directory, and
+ * {@code *}, {@code ?}, {@code [...]} and {@code **}).
+ *
+ * Each ignore file is read and compiled once, when the walk enters its
+ * directory; the walk then asks the directory's {@link Scope} about every
+ * entry. An ignored directory is never listed, so {@code node_modules} or
+ * {@code target} costs one check however big it is.
+ */
+final class IgnoreRules {
+
+    static final String ROOT_FILE = ".forbiddenignore";
+    static final String DIRECTORY_FILE = ".gitignore";
+
+    private final Path root;
+    private final Path absoluteRoot; // for paths that come from elsewhere (the watcher)
+    private final boolean enabled;
+    private final AtomicLong prunedDirectories = new AtomicLong(0);
+    private final AtomicLong ignoreFiles = new AtomicLong(0);
+    private final Set<Path> countedFiles = ConcurrentHashMap.newKeySet();
+    // Watch events: the scope of every directory asked about, until an ignore file changes
+    private final Map<Path, Scope> scopes = new ConcurrentHashMap<>();
+
+    IgnoreRules(Path root, boolean enabled) {
+        this.root = root;
+        this.absoluteRoot = root.toAbsolutePath().normalize();
+        this.enabled = enabled;
+    }
+
+    /** The rules of the search root: its .forbiddenignore, then its .gitignore. */
+    Scope rootScope() {
+        return rootScope(root);
+    }
+
+    private Scope rootScope(Path base) {
+        Scope scope = new Scope(null, base, List.of());
+        if (!enabled)
+            return scope;
+        List<Rule> rules = new ArrayList<>(read(base.resolve(ROOT_FILE)));
+        rules.addAll(read(base.resolve(DIRECTORY_FILE)));
+        return rules.isEmpty() ? scope : new Scope(null, base, rules);
+    }
+
+    /**
+     * Whether a path anywhere in the tree is ignored, for paths that come
+     * without a walk (watch events). Reads the ignore files on the way down
+     * the first time, see {@link #scopeOf}.
+     */
+    boolean isIgnored(Path path, boolean directory) {
+        if (!enabled)
+            return false;
+        Path absolute = path.toAbsolutePath().normalize();
+        if (absolute.equals(absoluteRoot) || !absolute.startsWith(absoluteRoot))
+            return false;
+        Scope parent = scopeOf(absolute.getParent());
+        return parent == null || parent.isIgnored(absolute, directory);
+    }
+
+    /**
+     * The scope of a directory anywhere in the tree, entering every directory
+     * on the way down; null if it or one of its parents is ignored. Scopes are
+     * kept, so a stream of watch events does not read the ignore files again.
+     */
+    Scope scopeOf(Path directory) {
+        Path absolute = directory.toAbsolutePath().normalize();
+        if (!absolute.startsWith(absoluteRoot))
+            return null;
+        Scope scope = scopes.get(absolute);
+        if (scope != null)
+            return scope;
+
+        if (absolute.equals(absoluteRoot)) {
+            scope = rootScope(absoluteRoot);
+        } else {
+            Scope parent = scopeOf(absolute.getParent());
+            if (parent == null || parent.isIgnored(absolute, true))
+                return null;
+            scope = parent.enter(absolute);
+        }
+        scopes.put(absolute, scope);
+        return scope;
+    }
+
+    /** A watch event for {@code path}: if it is an ignore file, the kept scopes are out of date. */
+    void changed(Path path) {
+        String name = path.getFileName().toString();
+        if (name.equals(ROOT_FILE) || name.equals(DIRECTORY_FILE)) {
+            scopes.clear();
+        }
+    }
+
+    /** Counts a directory the walk did not enter. */
+    void pruned() {
+        prunedDirectories.incrementAndGet();
+    }
+
+    long getPrunedDirectories() {
+        return prunedDirectories.get();
+    }
+
+    long getIgnoreFiles() {
+        return ignoreFiles.get();
+    }
+
+    /** The compiled rules of one ignore file; none if there is no such file. */
+    private List<Rule> read(Path file) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return List.of();
+        } catch (IOException e) {
+            System.err.println("Cannot read " + file + ": " + e.getMessage());
+            return List.of();
+        }
+        if (countedFiles.add(file.toAbsolutePath().normalize())) {
+            ignoreFiles.incrementAndGet(); // read again after a change, but counted once
+        }
+        List<Rule> rules = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            try {
+                Rule rule = Rule.parse(lines.get(i));
+                if (rule != null) {
+                    rules.add(rule);
+                }
+            } catch (PatternSyntaxException e) {
+                // Like git: a malformed pattern is skipped, the rest of the file still applies
+                System.err.println("Ignoring bad pattern in " + file + " line " + (i + 1) + ": " + lines.get(i));
+            }
+        }
+        return rules;
+    }
+
+    /** The rules in effect in one directory: its own ignore file's, then its parents'. */
+    final class Scope {
+        private final Scope parent;
+        private final Path base; // anchored patterns are relative to this directory
+        private final List<Rule> rules;
+
+        private Scope(Scope parent, Path base, List<Rule> rules) {
+            this.parent = parent;
+            this.base = base;
+            this.rules = rules;
+        }
+
+        /** The scope of a subdirectory: this one plus the subdirectory's .gitignore, if it has one. */
+        Scope enter(Path directory) {
+            if (!enabled)
+                return this;
+            List<Rule> own = read(directory.resolve(DIRECTORY_FILE));
+            return own.isEmpty() ? this : new Scope(this, directory, own);
+        }
+
+        /** The last matching rule decides, the deepest ignore file first. */
+        boolean isIgnored(Path entry, boolean directory) {
+            String name = entry.getFileName().toString();
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                String relative = null;
+                for (int i = scope.rules.size() - 1; i >= 0; i--) {
+                    Rule rule = scope.rules.get(i);
+                    if (rule.directoryOnly && !directory)
+                        continue;
+                    boolean matches;
+                    if (rule.anchored) {
+                        if (relative == null) {
+                            relative = relativePath(scope.base, entry);
+                            if (relative == null)
+                                break; // not below this ignore file's directory
+                        }
+                        matches = rule.matches(relative);
+                    } else {
+                        matches = rule.matches(name);
+                    }
+                    if (matches)
+                        return !rule.negated;
+                }
+            }
+            return false;
+        }
+
+        private String relativePath(Path base, Path entry) {
+            if (!entry.startsWith(base))
+                return null;
+            Path relative = base.relativize(entry);
+            StringBuilder path = new StringBuilder();
+            for (int i = 0; i < relative.getNameCount(); i++) {
+                path.append(i > 0 ? "/" : "").append(relative.getName(i));
+            }
+            return path.toString();
+        }
+    }
+
+    /** One line of an ignore file. Plain names are compared as strings, everything else is a regex. */
+    private static final class Rule {
+        final boolean negated;
+        final boolean directoryOnly;
+        final boolean anchored;   // matched against the path below the ignore file's directory
+        final String literal;     // set when the pattern has no wildcards
+        final Pattern pattern;
+
+        private Rule(boolean negated, boolean directoryOnly, boolean anchored, String glob) {
+            this.negated = negated;
+            this.directoryOnly = directoryOnly;
+            this.anchored = anchored;
+            boolean wildcards = glob.chars().anyMatch(c -> c == '*' || c == '?' || c == '[' || c == '\\');
+            this.literal = wildcards ? null : glob;
+            this.pattern = wildcards ? Pattern.compile(toRegex(glob)) : null;
+        }
+
+        boolean matches(String path) {
+            return literal != null ? literal.equals(path) : pattern.matcher(path).matches();
+        }
+
+        /** The rule of a line, or null for blank lines and comments. */
+        static Rule parse(String line) {
+            // Trailing spaces don't count unless escaped
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ' && !(end > 1 && line.charAt(end - 2) == '\\')) {
+                end--;
+            }
+            String text = line.substring(0, end);
+            if (text.isEmpty() || text.startsWith("#"))
+                return null;
+
+            boolean negated = text.startsWith("!");
+            if (negated) {
+                text = text.substring(1);
+            } else if (text.startsWith("\\#") || text.startsWith("\\!")) {
+                text = text.substring(1);
+            }
+            boolean directoryOnly = text.endsWith("/");
+            if (directoryOnly) {
+                text = text.substring(0, text.length() - 1);
+            }
+            boolean anchored = text.indexOf('/') >= 0;
+            if (text.startsWith("/")) {
+                text = text.substring(1);
+            }
+            if (text.isEmpty())
+                return null;
+            return new Rule(negated, directoryOnly, anchored, text);
+        }
+
+        private static String toRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < glob.length(); i++) {
+                char c = glob.charAt(i);
+                if (c == '*') {
+                    if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                        boolean slashAfter = i + 2 < glob.length() && glob.charAt(i + 2) == '/';
+                        if (slashAfter) {
+                            regex.append("(?:.*/)?"); // "**/": any number of directories
+                            i += 2;
+                        } else {
+                            regex.append(".*");
+                            i += 1;
+                        }
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                } else if (c == '?') {
+                    regex.append("[^/]");
+                } else if (c == '[') {
+                    int close = glob.indexOf(']', i + 2);
+                    if (close < 0) {
+                        regex.append("\\[");
+                    } else {
+                        String set = glob.substring(i + 1, close);
+                        if (set.startsWith("!")) {
+                            set = "^" + set.substring(1);
+                        }
+                        regex.append('[').append(set.replace("\\", "\\\\")).append(']');
+                        i = close;
+                    }
+                } else if (c == '\\' && i + 1 < glob.length()) {
+                    regex.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                } else {
+                    regex.append(Pattern.quote(String.valueOf(c)));
+                }
+            }
+            return regex.toString();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Caps in-flight file I/O by open files and by bytes, independently of how
+ * many threads are doing it. A file takes one open-file permit and a share of
+ * the byte budget equal to its size; a file larger than the whole budget takes
+ * all of it, so it still runs, just alone.
+ */
+final class IoLimiter {
+
+    private static final int KIB = 1024;
+
+    private final int maxOpenFiles;
+    private final Semaphore openFiles;
+    private final Semaphore kibInFlight; // null = no byte limit
+    private final int maxKib;
+
+    IoLimiter(int maxOpenFiles, long maxBytesInFlight) {
+        this.maxOpenFiles = maxOpenFiles;
+        this.openFiles = new Semaphore(maxOpenFiles);
+        if (maxBytesInFlight == Long.MAX_VALUE) {
+            this.maxKib = 0;
+            this.kibInFlight = null;
+        } else {
+            this.maxKib = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytesInFlight / KIB));
+            this.kibInFlight = new Semaphore(maxKib);
+        }
+    }
+
+    /** Limits open files only (the fixed-pool behaviour). */
+    static IoLimiter openFilesOnly(int maxOpenFiles) {
+        return new IoLimiter(maxOpenFiles, Long.MAX_VALUE);
+    }
+
+    void acquireFile() throws InterruptedException {
+        openFiles.acquire();
+    }
+
+    void releaseFile() {
+        openFiles.release();
+    }
+
+    /** Reserves byte budget for a file of this size; returns the amount to hand back to releaseBytes. */
+    int acquireBytes(long fileSize) throws InterruptedException {
+        if (kibInFlight == null) {
+            return 0;
+        }
+        int kib = (int) Math.min(maxKib, fileSize / KIB + 1);
+        kibInFlight.acquire(kib);
+        return kib;
+    }
+
+    void releaseBytes(int reserved) {
+        if (reserved > 0) {
+            kibInFlight.release(reserved);
+        }
+    }
+
+    /** Bytes currently reserved (to the KiB), 0 when there is no byte limit. */
+    long bytesInFlight() {
+        return kibInFlight == null ? 0 : (long) (maxKib - kibInFlight.availablePermits()) * KIB;
+    }
+
+    /** Files currently holding an open-file permit. */
+    int filesInFlight() {
+        return maxOpenFiles - openFiles.availablePermits();
+    }
+}
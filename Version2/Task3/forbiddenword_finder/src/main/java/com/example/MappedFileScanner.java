@@ -0,0 +1,174 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Byte-level scanning of memory-mapped files for {@link ScanMode#MAPPED_BYTES}.
+ *
+ * Files are mapped in fixed-size windows, cut anywhere (a minified file may
+ * have no line break at all). Each window is mapped with one byte before it,
+ * for the word boundary check, and {@link WordMatcher#maxByteLength()} + 1
+ * bytes after it, so a word crossing the cut is still seen whole. A window
+ * only hands out matches that start in it and after the end of the previous
+ * window's last match, so every match is found exactly once.
+ */
+final class MappedFileScanner {
+
+    static final long WINDOW_SIZE = 64L * 1024 * 1024;
+    private static final byte[] MASK_BYTES = WordMatcher.MASK.getBytes(StandardCharsets.US_ASCII);
+
+    /** Receives every match with its absolute byte position in the file. */
+    interface OffsetSink {
+        void onMatch(long offset, int length, int wordId) throws IOException;
+    }
+
+    /**
+     * Outcome of scanning a byte range: the number of matches, and the end of
+     * the range's output, past the range itself if its last match crosses it.
+     */
+    record Range(long matches, long end) {
+    }
+
+    private MappedFileScanner() {
+    }
+
+    /**
+     * Looks at the start of the file and returns false if it needs real charset
+     * decoding: a UTF-16 / UTF-32 byte order mark, or bytes that do not look
+     * like text (UTF-16 without a BOM, say). A UTF-8 BOM is fine: it holds no
+     * word characters.
+     */
+    static boolean isByteScannable(FileChannel channel) throws IOException {
+        return isByteScannable(FileClassifier.head(channel));
+    }
+
+    /** Same check on the start of a file that is already in memory. */
+    static boolean isByteScannable(ByteBuffer content) {
+        ByteBuffer head = content.slice(content.position(), Math.min(FileClassifier.SNIFF_SIZE, content.remaining()));
+        FileClassifier.Bom bom = FileClassifier.bom(head);
+        if (bom != null)
+            return bom.charset().equals(StandardCharsets.UTF_8);
+        return !FileClassifier.looksBinary(head);
+    }
+
+    /**
+     * Scans the whole file. If {@code maskedOut} is not null, the file is also
+     * written to it with every match replaced by {@link WordMatcher#MASK}.
+     * Returns the number of matches, or -1 if the scan was cancelled.
+     */
+    static long scan(FileChannel channel, WordMatcher matcher, long[] hits,
+            WritableByteChannel maskedOut, BooleanSupplier cancelled) throws IOException {
+        Range range = scan(channel, 0, channel.size(), 0, matcher, hits, maskedOut, null, null, cancelled);
+        return range == null ? -1 : range.matches();
+    }
+
+    /**
+     * Counts the byte range {@code [from, to)} and reports the position of every
+     * match to {@code offsets} instead of writing a masked copy. If {@code hash}
+     * is not null, every window is added to it while it is mapped, so the
+     * range needs no second read to be hashed.
+     */
+    static long scanMatches(FileChannel channel, long from, long to, WordMatcher matcher, long[] hits,
+            OffsetSink offsets, ContentHash.Accumulator hash, BooleanSupplier cancelled) throws IOException {
+        Range range = scan(channel, from, to, from, matcher, hits, null, offsets, hash, cancelled);
+        return range == null ? -1 : range.matches();
+    }
+
+    /**
+     * Scans the byte range {@code [from, to)}, the bytes around it serving as
+     * context. Matches may start no earlier than {@code resumeAt}: the end of
+     * the previous range's last match, when that match crossed into this range.
+     * The masked copy covers {@code [resumeAt, end)}, {@code hash} (if not null)
+     * covers {@code [from, to)}. Returns null if the scan was cancelled.
+     */
+    static Range scan(FileChannel channel, long from, long to, long resumeAt, WordMatcher matcher, long[] hits,
+            WritableByteChannel maskedOut, OffsetSink offsets, ContentHash.Accumulator hash,
+            BooleanSupplier cancelled) throws IOException {
+        long size = channel.size();
+        int margin = matcher.maxByteLength() + 1;
+        WindowSink sink = new WindowSink(maskedOut, offsets, Math.max(from, resumeAt));
+        long position = from;
+        long matches = 0;
+
+        while (position < to) {
+            if (cancelled.getAsBoolean())
+                return null;
+
+            long windowEnd = Math.min(position + WINDOW_SIZE, to);
+            long mapStart = position > 0 ? position - 1 : 0;
+            long mapEnd = Math.min(windowEnd + margin, size);
+            MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, mapStart, mapEnd - mapStart);
+            int start = (int) (position - mapStart);
+            int end = (int) (windowEnd - mapStart);
+
+            sink.window(window, mapStart);
+            int emitFrom = (int) Math.min(sink.end - mapStart, mapEnd - mapStart);
+            matches += matcher.scanBytes(window, 0, (int) (mapEnd - mapStart), emitFrom, end, hits, sink);
+            sink.finish(windowEnd);
+            if (hash != null) {
+                hash.update(window.slice(start, end - start));
+            }
+            position = windowEnd;
+        }
+        return new Range(matches, sink.end);
+    }
+
+    /**
+     * Tracks where the last match ended and, for the masked copy, writes the
+     * window to the output with the mask in place of each match.
+     */
+    private static final class WindowSink implements WordMatcher.MatchSink {
+        private final WritableByteChannel maskedOut;
+        private final OffsetSink offsets;
+        private ByteBuffer window;
+        private long windowStart;
+        private long end; // everything before this is scanned and written
+
+        WindowSink(WritableByteChannel maskedOut, OffsetSink offsets, long start) {
+            this.maskedOut = maskedOut;
+            this.offsets = offsets;
+            this.end = start;
+        }
+
+        void window(ByteBuffer window, long windowStart) {
+            this.window = window;
+            this.windowStart = windowStart;
+        }
+
+        @Override
+        public void onMatch(int start, int stop, int wordId) throws IOException {
+            if (offsets != null)
+                offsets.onMatch(windowStart + start, stop - start, wordId);
+            if (maskedOut != null) {
+                copy(windowStart + start);
+                write(ByteBuffer.wrap(MASK_BYTES));
+            }
+            end = windowStart + stop;
+        }
+
+        void finish(long windowEnd) throws IOException {
+            if (end >= windowEnd)
+                return;
+            if (maskedOut != null)
+                copy(windowEnd);
+            end = windowEnd;
+        }
+
+        private void copy(long until) throws IOException {
+            int from = (int) (end - windowStart);
+            write(window.slice(from, (int) (until - windowStart) - from));
+        }
+
+        private void write(ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                maskedOut.write(buffer);
+            }
+        }
+    }
+}
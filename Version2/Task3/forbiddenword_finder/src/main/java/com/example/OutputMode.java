@@ -0,0 +1,26 @@
+package com.example;
+
+/**
+ * What is written to the output directory for a file with matches. Chosen per scan.
+ */
+public enum OutputMode {
+    /** A copy of the original and the whole masked file (.replaced), the original behaviour. */
+    FULL_COPIES("Original + masked copy"),
+    /**
+     * One small .patch sidecar with the position, length and word of every
+     * match; PatchFile rebuilds the masked file on demand. Files that need
+     * charset decoding fall back to FULL_COPIES.
+     */
+    PATCH_SIDECAR("Match offsets (patch)");
+
+    private final String label;
+
+    OutputMode(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
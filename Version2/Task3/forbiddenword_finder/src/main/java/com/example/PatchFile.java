@@ -0,0 +1,243 @@
+package com.example;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact sidecar output for {@link OutputMode#PATCH_SIDECAR}: where the
+ * matches are, instead of a full original copy and a full masked copy.
+ *
+ * A patch names its source file and records the source's size and content
+ * hash, the mask, the words that matched, and one record per match (gap since
+ * the previous match, length, word). Its size grows with the number of
+ * matches, not with the file. {@link #rebuild} (or running this class) turns
+ * source + patch back into the masked file, and refuses if the source changed.
+ *
+ * Usage: {@code java com.example.PatchFile <file.patch> [output] [source]}
+ */
+public final class PatchFile {
+
+    static final String SUFFIX = ".patch";
+
+    private static final int MAGIC = 0x46465054; // "FFPT"
+    private static final int VERSION = 1;
+    private static final int COPY_BUFFER = 256 * 1024;
+
+    /** Match positions in file order, in growable primitive arrays. */
+    static final class MatchList implements MappedFileScanner.OffsetSink {
+        private long[] offsets = new long[16];
+        private int[] lengths = new int[16];
+        private int[] wordIds = new int[16];
+        private int size = 0;
+
+        @Override
+        public void onMatch(long offset, int length, int wordId) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                lengths = Arrays.copyOf(lengths, size * 2);
+                wordIds = Arrays.copyOf(wordIds, size * 2);
+            }
+            offsets[size] = offset;
+            lengths[size] = length;
+            wordIds[size] = wordId;
+            size++;
+        }
+
+        void addAll(MatchList other) {
+            for (int i = 0; i < other.size; i++) {
+                onMatch(other.offsets[i], other.lengths[i], other.wordIds[i]);
+            }
+        }
+
+        /** Adds the per-word counts of these matches to {@code hits}. */
+        void countWords(long[] hits) {
+            for (int i = 0; i < size; i++) {
+                hits[wordIds[i]]++;
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        long offset(int i) {
+            return offsets[i];
+        }
+
+        int length(int i) {
+            return lengths[i];
+        }
+    }
+
+    private PatchFile() {
+    }
+
+    /** Writes the patch for {@code source} to {@code patch}. */
+    static void write(Path patch, Path source, long sourceSize, long sourceHash, WordMatcher matcher,
+            MatchList matches) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(patch)))) {
+            writeHeader(out, source, sourceSize, sourceHash);
+
+            // Only the words that matched, with patch-local ids
+            Map<Integer, Integer> localIds = new HashMap<>();
+            for (int i = 0; i < matches.size; i++) {
+                localIds.putIfAbsent(matches.wordIds[i], localIds.size());
+            }
+            String[] words = new String[localIds.size()];
+            localIds.forEach((id, local) -> words[local] = matcher.word(id));
+            out.writeInt(words.length);
+            for (String word : words) {
+                out.writeUTF(word);
+            }
+
+            out.writeInt(matches.size);
+            long previousEnd = 0;
+            for (int i = 0; i < matches.size; i++) {
+                writeVarLong(out, matches.offsets[i] - previousEnd);
+                writeVarLong(out, matches.lengths[i]);
+                writeVarLong(out, localIds.get(matches.wordIds[i]));
+                previousEnd = matches.offsets[i] + matches.lengths[i];
+            }
+        }
+    }
+
+    /** Copies a patch for a byte-identical file, pointing it at {@code source} instead. */
+    static void retarget(Path patch, Path source, Path target) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(patch)));
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Files.newOutputStream(target)))) {
+            Header header = readHeader(in, patch);
+            writeHeader(out, source, header.sourceSize, header.sourceHash);
+            in.transferTo(out);
+        }
+    }
+
+    /**
+     * Writes the masked version of the patched file to {@code output}. The source
+     * is the one named in the patch unless {@code source} is given.
+     */
+    public static void rebuild(Path patch, Path source, Path output) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(patch)))) {
+            Header header = readHeader(in, patch);
+            if (source == null) {
+                source = Paths.get(header.source);
+            }
+
+            try (FileChannel sourceChannel = FileChannel.open(source, StandardOpenOption.READ);
+                    OutputStream out = new BufferedOutputStream(Files.newOutputStream(output))) {
+                // 1. The patch only fits the exact bytes it was made from
+                if (sourceChannel.size() != header.sourceSize || ContentHash.of(sourceChannel) != header.sourceHash) {
+                    throw new IOException("Source has changed since the patch was written: " + source);
+                }
+
+                String[] words = new String[in.readInt()];
+                for (int i = 0; i < words.length; i++) {
+                    words[i] = in.readUTF();
+                }
+
+                // 2. Copy the gaps, write the mask over every match
+                byte[] mask = header.mask.getBytes(StandardCharsets.UTF_8);
+                ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER);
+                long position = 0;
+                int matchCount = in.readInt();
+                for (int i = 0; i < matchCount; i++) {
+                    long offset = position + readVarLong(in);
+                    long length = readVarLong(in);
+                    int wordId = (int) readVarLong(in);
+                    if (wordId >= words.length || offset + length > header.sourceSize) {
+                        throw new IOException("Corrupt patch file: " + patch);
+                    }
+                    copy(sourceChannel, position, offset, buffer, out);
+                    out.write(mask);
+                    position = offset + length;
+                }
+                copy(sourceChannel, position, header.sourceSize, buffer, out);
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            System.err.println("Usage: PatchFile <file.patch> [output] [source]");
+            System.exit(2);
+        }
+        Path patch = Paths.get(args[0]);
+        String name = patch.getFileName().toString();
+        Path output = args.length > 1 ? Paths.get(args[1])
+                : patch.resolveSibling(name.substring(0, name.length() - SUFFIX.length()) + ".replaced");
+        Path source = args.length > 2 ? Paths.get(args[2]) : null;
+        rebuild(patch, source, output);
+        System.out.println("Rebuilt " + output);
+    }
+
+    // --- Format ---
+
+    private static final class Header {
+        String source;
+        long sourceSize;
+        long sourceHash;
+        String mask;
+    }
+
+    private static void writeHeader(DataOutputStream out, Path source, long sourceSize, long sourceHash)
+            throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeUTF(source.toAbsolutePath().normalize().toString());
+        out.writeLong(sourceSize);
+        out.writeLong(sourceHash);
+        out.writeUTF(WordMatcher.MASK);
+    }
+
+    private static Header readHeader(DataInputStream in, Path patch) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("Not a patch file: " + patch);
+        }
+        Header header = new Header();
+        header.source = in.readUTF();
+        header.sourceSize = in.readLong();
+        header.sourceHash = in.readLong();
+        header.mask = in.readUTF();
+        return header;
+    }
+
+    private static void copy(FileChannel source, long from, long to, ByteBuffer buffer, OutputStream out)
+            throws IOException {
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = source.read(buffer, position);
+            if (read <= 0)
+                throw new EOFException("Source is shorter than the patch expects");
+            out.write(buffer.array(), 0, read);
+            position += read;
+        }
+    }
+
+    /** Unsigned LEB128: small gaps and lengths take one or two bytes. */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Corrupt patch file");
+    }
+}
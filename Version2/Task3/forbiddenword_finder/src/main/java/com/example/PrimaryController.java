@@ -1,5 +1,6 @@
 package com.example;
 
+import javafx.collections.FXCollections;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -21,6 +22,20 @@ public class PrimaryController {
     private TextField directoryPathField;
     @FXML
     private TextField fileField;
+    @FXML
+    private ComboBox<ScanMode> scanModeComboBox;
+    @FXML
+    private ComboBox<ScanEngine> scanEngineComboBox;
+    @FXML
+    private ComboBox<OutputMode> outputModeComboBox;
+    @FXML
+    private CheckBox incrementalCheckBox;
+    @FXML
+    private CheckBox dedupCheckBox;
+    @FXML
+    private CheckBox watchCheckBox;
+    @FXML
+    private CheckBox archivesCheckBox;
 
     // Table View elements
     @FXML
@@ -33,6 +48,8 @@ public class PrimaryController {
     private TableColumn<ReportEntry, String> fileDirectoryColumn;
     @FXML
     private TableColumn<ReportEntry, String> searchDirectoryColumn;
+    @FXML
+    private TableColumn<ReportEntry, String> scanPathColumn;
 
     // Control buttons
     @FXML
@@ -44,6 +61,14 @@ public class PrimaryController {
     @FXML
     private Button forbiddenResumeButton;
     @FXML
+    private ComboBox<ResultSort> resultSortComboBox;
+    @FXML
+    private TextField directoryFilterField;
+    @FXML
+    private TextField fileNameFilterField;
+    @FXML
+    private TextField wordFilterField;
+    @FXML
     private Button forbiddenStopButton;
     @FXML
     private Button forbiddenResetButton;
@@ -61,6 +86,24 @@ public class PrimaryController {
         countColumn.setCellValueFactory(new PropertyValueFactory<>("forbiddenWordCount"));
         fileDirectoryColumn.setCellValueFactory(new PropertyValueFactory<>("fileDirectory"));
         searchDirectoryColumn.setCellValueFactory(new PropertyValueFactory<>("searchDirectory"));
+        scanPathColumn.setCellValueFactory(new PropertyValueFactory<>("scanPath"));
+        // Rows are views of the task's result store: ordering goes through the Sort box
+        reportTableView.getColumns().forEach(column -> column.setSortable(false));
+
+        scanModeComboBox.getItems().setAll(ScanMode.values());
+        scanModeComboBox.setValue(ScanMode.DECODED);
+        scanEngineComboBox.getItems().setAll(ScanEngine.values());
+        scanEngineComboBox.setValue(ScanEngine.FIXED_POOL);
+        outputModeComboBox.getItems().setAll(OutputMode.values());
+        outputModeComboBox.setValue(OutputMode.FULL_COPIES);
+
+        // Sorting and filtering run in the task's query thread, not here
+        resultSortComboBox.getItems().setAll(ResultSort.values());
+        resultSortComboBox.setValue(ResultSort.FOUND_ORDER);
+        resultSortComboBox.valueProperty().addListener((obs, oldValue, newValue) -> applyResultQuery());
+        directoryFilterField.textProperty().addListener((obs, oldValue, newValue) -> applyResultQuery());
+        fileNameFilterField.textProperty().addListener((obs, oldValue, newValue) -> applyResultQuery());
+        wordFilterField.textProperty().addListener((obs, oldValue, newValue) -> applyResultQuery());
 
         setControlsForStopState(); // Initialize control buttons
     }
@@ -101,8 +144,8 @@ public class PrimaryController {
         boolean usingEmptyWords = false;
 
         try {
-            // Clear previous results
-            reportTableView.getItems().clear();
+            // Clear previous results (the old task's rows stay with it)
+            reportTableView.setItems(FXCollections.observableArrayList());
 
             if (forbiddenWordsFile != null && Files.exists(forbiddenWordsFile)) {
                 forbiddenWords = new HashSet<>(Files.readAllLines(forbiddenWordsFile));
@@ -115,13 +158,30 @@ public class PrimaryController {
             }
 
             // Create and configure the task
-            currentTask = new ForbiddenFinderTask(selectedDirectory, forbiddenWords, outputDirectory);
+            ScanOptions options = new ScanOptions();
+            options.setScanMode(scanModeComboBox.getValue());
+            options.setScanEngine(scanEngineComboBox.getValue());
+            options.setOutputMode(outputModeComboBox.getValue());
+            options.setIncremental(incrementalCheckBox.isSelected());
+            options.setDeduplicate(dedupCheckBox.isSelected());
+            options.setWatch(watchCheckBox.isSelected());
+            options.setScanArchives(archivesCheckBox.isSelected());
+            options.setDebugLog(Boolean.getBoolean("forbiddenfinder.debug"));
+            currentTask = new ForbiddenFinderTask(selectedDirectory, forbiddenWords, outputDirectory, options);
+            currentTask.showResults(currentResultQuery());
 
             // Bind UI elements to the task's properties
             forbiddenProgressBar.progressProperty().bind(currentTask.progressProperty());
 
             // Bind the task's message property to the TextArea
 
+            // Watch mode publishes its live result list once the first scan is done
+            currentTask.valueProperty().addListener((obs, oldValue, newValue) -> {
+                if (newValue != null) {
+                    reportTableView.setItems(newValue);
+                }
+            });
+
             // Set callbacks for completion and failure
             currentTask.setOnSucceeded(e -> {
                 // Bind the task's result to the TableView
@@ -176,7 +236,7 @@ public class PrimaryController {
         }
         forbiddenProgressBar.progressProperty().unbind();
         forbiddenProgressBar.setProgress(0.0);
-        reportTableView.getItems().clear(); // Clear the table
+        reportTableView.setItems(FXCollections.observableArrayList()); // Clear the table
         setControlsForStopState();
         directoryPathField.setText("");
         fileField.setText("");
@@ -184,6 +244,17 @@ public class PrimaryController {
         forbiddenWordsFile = null;
     }
 
+    private void applyResultQuery() {
+        if (currentTask != null) {
+            currentTask.showResults(currentResultQuery());
+        }
+    }
+
+    private ResultQuery currentResultQuery() {
+        return new ResultQuery(resultSortComboBox.getValue(), directoryFilterField.getText(),
+                fileNameFilterField.getText(), wordFilterField.getText());
+    }
+
     private void setControlsForStartState() {
         forbiddenStartButton.setDisable(true);
         forbiddenPauseButton.setDisable(false);
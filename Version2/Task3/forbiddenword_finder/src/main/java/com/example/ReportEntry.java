@@ -11,18 +11,21 @@ public class ReportEntry {
     private final SimpleStringProperty fileDirectory;
     private final SimpleStringProperty searchDirectory;
     private final SimpleLongProperty fileSize; // New property for file size
+    private final SimpleStringProperty scanPath; // How the file was actually read (ScanMode, chunks)
 
     public ReportEntry(
             String fileName, 
             int forbiddenWordCount, 
             String fileDirectory, 
             String searchDirectory,
-            long fileSize) { // Updated constructor signature
+            long fileSize,
+            String scanPath) { // Updated constructor signature
         this.fileName = new SimpleStringProperty(fileName);
         this.forbiddenWordCount = new SimpleIntegerProperty(forbiddenWordCount);
         this.fileDirectory = new SimpleStringProperty(fileDirectory);
         this.searchDirectory = new SimpleStringProperty(searchDirectory);
         this.fileSize = new SimpleLongProperty(fileSize); // Initialize new property
+        this.scanPath = new SimpleStringProperty(scanPath);
     }
 
     // --- Getters for TableView Column Binding ---
@@ -31,6 +34,7 @@ public class ReportEntry {
     public String getFileDirectory() { return fileDirectory.get(); }
     public String getSearchDirectory() { return searchDirectory.get(); }
     public long getFileSize() { return fileSize.get(); } // New Getter
+    public String getScanPath() { return scanPath.get(); }
     
     // --- Optional: Property Getters (good practice) ---
     public SimpleStringProperty fileNameProperty() { return fileName; }
@@ -38,13 +42,18 @@ public class ReportEntry {
     public SimpleStringProperty fileDirectoryProperty() { return fileDirectory; }
     public SimpleStringProperty searchDirectoryProperty() { return searchDirectory; }
     public SimpleLongProperty fileSizeProperty() { return fileSize; } // New Property Getter
+    public SimpleStringProperty scanPathProperty() { return scanPath; }
     
     /**
      * Helper method to format file size into human-readable bytes (KB, MB, GB).
      * This is useful for presentation in the TableView.
      */
     public String getFormattedFileSize() {
-        long bytes = getFileSize();
+        return formatSize(getFileSize());
+    }
+
+    /** Same format for byte totals that are not a single file (e.g. in the report). */
+    public static String formatSize(long bytes) {
         if (bytes < 1024) return bytes + " B";
         int exp = (int) (Math.log(bytes) / Math.log(1024));
         String pre = "KMGTPE".charAt(exp - 1) + "";
@@ -0,0 +1,341 @@
+package com.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the report while the scan runs, in three formats side by side:
+ * the text report, CSV (one line per file) and JSON Lines (one object per
+ * file, then the top words and a summary). New rows are taken from the
+ * {@link ResultStore} and flushed to disk every half second, so a cancelled
+ * or crashed scan still leaves a report of everything found so far.
+ *
+ * {@link #close} ends the report with the summary: deduplication, the top K
+ * words (from a K-sized heap, not a full sort) with where each was found,
+ * totals, elapsed time and throughput.
+ */
+final class ReportWriter {
+
+    static final String PREFIX = "ForbiddenFinder_Report_";
+    private static final long FLUSH_MILLIS = 500;
+    private static final int BREAKDOWN_LIMIT = 5; // directories, extensions and files listed per top word
+
+    /** How the scan ended, for the summary. */
+    record Summary(String status, long filesScanned, long bytesScanned, DedupCache dedup,
+            FileClassifier classifier, IgnoreRules ignoreRules, ArchiveScanner archives) {
+    }
+
+    private final ResultStore results;
+    private final int topWords;
+    private final long startNanos;
+    private final Path textPath;
+    private final BufferedWriter text;
+    private final BufferedWriter csv;
+    private final BufferedWriter jsonLines;
+
+    private int writtenRows = 0;  // store rows up to here are written
+    private long filesWritten = 0;
+    private long replacementsWritten = 0;
+    private boolean closed = false;
+    private ScheduledExecutorService flusher;
+
+    /** Creates the three report files; {@code startNanos} is when the scan started. */
+    ReportWriter(Path outputDirectory, ResultStore results, int topWords, long startNanos) throws IOException {
+        this.results = results;
+        this.topWords = topWords;
+        this.startNanos = startNanos;
+
+        String name = PREFIX + System.currentTimeMillis();
+        textPath = outputDirectory.resolve(name + ".txt");
+        text = Files.newBufferedWriter(textPath);
+        csv = Files.newBufferedWriter(outputDirectory.resolve(name + ".csv"));
+        jsonLines = Files.newBufferedWriter(outputDirectory.resolve(name + ".jsonl"));
+
+        text.write("--- Forbidden Finder Report ---");
+        text.newLine();
+        text.write("\n\nFound Files Containing Forbidden Words:");
+        text.newLine();
+        csv.write("file,directory,replacements,size_bytes,scan_path");
+        csv.newLine();
+    }
+
+    /** Starts writing rows in the background as they are found. */
+    void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "report-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(() -> {
+            try {
+                writeNewRows();
+            } catch (IOException e) {
+                System.err.println("Could not write the report: " + e.getMessage());
+            }
+        }, FLUSH_MILLIS, FLUSH_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    Path getTextPath() {
+        return textPath;
+    }
+
+    /** Writes the rows found since the last call and flushes them to disk. */
+    synchronized void writeNewRows() throws IOException {
+        if (closed)
+            return;
+
+        int size = results.size();
+        results.forEachRow(writtenRows, size, (row, fileName, count, fileSize, directory, scanPath) -> {
+            // UPDATED: Include File Size in the generated report
+            text.write(String.format("File: %s | Replacements: %d | Size: %s | Path: %s",
+                    fileName,
+                    count,
+                    ReportEntry.formatSize(fileSize), // Use the formatted size for readability
+                    directory));
+            text.newLine();
+
+            csv.write(String.join(",", csvField(fileName), csvField(directory), Integer.toString(count),
+                    Long.toString(fileSize), csvField(scanPath)));
+            csv.newLine();
+
+            jsonLines.write(fileRecord(fileName, directory, count, fileSize, scanPath));
+            jsonLines.newLine();
+
+            filesWritten++;
+            replacementsWritten += count;
+        });
+        writtenRows = size;
+
+        text.flush();
+        csv.flush();
+        jsonLines.flush();
+    }
+
+    /**
+     * Writes the last rows and the summary, and closes the files. Safe to call
+     * again (the report is already complete then).
+     */
+    void close(Summary summary) throws IOException {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            try {
+                flusher.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                // Cancelled: still finish the report, the interrupt stays set
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+        }
+
+        synchronized (this) {
+            if (closed)
+                return;
+            try {
+                writeNewRows();
+                writeSummary(summary);
+            } finally {
+                closed = true;
+                closeAll();
+            }
+        }
+    }
+
+    private void writeSummary(Summary summary) throws IOException {
+        if (filesWritten == 0) {
+            text.write("None found.");
+        }
+
+        // Deduplication savings
+        DedupCache dedup = summary.dedup();
+        if (dedup != null) {
+            text.write("\n\n--- Deduplication ---");
+            text.newLine();
+            text.write(String.format("Duplicate files reused: %d | Bytes not scanned: %s",
+                    dedup.getDuplicateFiles(), ReportEntry.formatSize(dedup.getBytesSaved())));
+            text.newLine();
+        }
+
+        // Inside archives
+        ArchiveScanner archives = summary.archives();
+        if (archives != null && archives.getArchivesOpened() > 0) {
+            text.write("\n\n--- Archives ---");
+            text.newLine();
+            text.write(String.format("Archives opened: %d | Entries scanned: %d (%s) | Entries skipped: %d",
+                    archives.getArchivesOpened(), archives.getEntriesScanned(),
+                    ReportEntry.formatSize(archives.getEntryBytes()), archives.getEntriesSkipped()));
+            text.newLine();
+            jsonLines.write(String.format(Locale.ROOT, "{\"type\":\"archives\",\"opened\":%d,\"entriesScanned\":%d,"
+                    + "\"entryBytes\":%d,\"entriesSkipped\":%d}", archives.getArchivesOpened(),
+                    archives.getEntriesScanned(), archives.getEntryBytes(), archives.getEntriesSkipped()));
+            jsonLines.newLine();
+        }
+
+        // Files not scanned, by reason
+        FileClassifier classifier = summary.classifier();
+        if (classifier != null) {
+            text.write("\n\n--- Skipped Files ---");
+            text.newLine();
+            long skippedFiles = 0;
+            for (FileClassifier.SkipReason reason : FileClassifier.SkipReason.values()) {
+                long files = classifier.getSkippedFiles(reason);
+                if (files == 0)
+                    continue;
+                long bytes = classifier.getSkippedBytes(reason);
+                text.write(String.format("%s: %d files (%s)", reason, files, ReportEntry.formatSize(bytes)));
+                text.newLine();
+                jsonLines.write(String.format(Locale.ROOT, "{\"type\":\"skipped\",\"reason\":%s,\"files\":%d,\"bytes\":%d}",
+                        jsonString(reason.name().toLowerCase(Locale.ROOT)), files, bytes));
+                jsonLines.newLine();
+                skippedFiles += files;
+            }
+            IgnoreRules ignoreRules = summary.ignoreRules();
+            if (ignoreRules != null && ignoreRules.getIgnoreFiles() > 0) {
+                // Pruned directories were never listed, so their files and bytes are unknown
+                text.write(String.format("Ignore files: %d | Directories not walked: %d",
+                        ignoreRules.getIgnoreFiles(), ignoreRules.getPrunedDirectories()));
+                text.newLine();
+                jsonLines.write(String.format(Locale.ROOT, "{\"type\":\"ignored\",\"ignoreFiles\":%d,"
+                        + "\"directoriesPruned\":%d}", ignoreRules.getIgnoreFiles(), ignoreRules.getPrunedDirectories()));
+                jsonLines.newLine();
+            } else if (skippedFiles == 0) {
+                text.write("None.");
+                text.newLine();
+            }
+        }
+
+        // K Most Popular Words
+        WordStats stats = new WordStats(results);
+        List<Map.Entry<String, Long>> top = WordStats.top(stats.totals(), topWords);
+        text.write(String.format("\n\n--- %d Most Popular Forbidden Words ---", topWords));
+        text.newLine();
+        int rank = 1;
+        for (Map.Entry<String, Long> entry : top) {
+            text.write(String.format("%s: %d replacements", entry.getKey(), entry.getValue()));
+            text.newLine();
+            jsonLines.write(String.format(Locale.ROOT, "{\"type\":\"word\",\"rank\":%d,\"word\":%s,\"replacements\":%d}",
+                    rank++, jsonString(entry.getKey()), entry.getValue()));
+            jsonLines.newLine();
+        }
+
+        // Where the top words were found
+        text.write("\n\n--- Word Breakdown ---");
+        text.newLine();
+        for (Map.Entry<String, Long> entry : top) {
+            WordStats.Breakdown breakdown = stats.breakdown(entry.getKey(), BREAKDOWN_LIMIT);
+            text.write(String.format("%s: %d replacements", breakdown.word(), breakdown.total()));
+            text.newLine();
+            writeBreakdownLine("By directory", breakdown.byDirectory());
+            writeBreakdownLine("By extension", breakdown.byExtension());
+            writeBreakdownLine("By file", breakdown.byFile());
+
+            jsonLines.write(String.format(Locale.ROOT,
+                    "{\"type\":\"wordBreakdown\",\"word\":%s,\"replacements\":%d,\"byDirectory\":%s,"
+                            + "\"byExtension\":%s,\"byFile\":%s}",
+                    jsonString(breakdown.word()), breakdown.total(), jsonObject(breakdown.byDirectory()),
+                    jsonObject(breakdown.byExtension()), jsonObject(breakdown.byFile())));
+            jsonLines.newLine();
+        }
+
+        // Totals and throughput
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double filesPerSecond = seconds > 0 ? summary.filesScanned() / seconds : 0;
+        double bytesPerSecond = seconds > 0 ? summary.bytesScanned() / seconds : 0;
+        text.write("\n\n--- Summary ---");
+        text.newLine();
+        text.write(String.format("Status: %s", summary.status()));
+        text.newLine();
+        text.write(String.format("Files scanned: %d (%s) | Files with forbidden words: %d | Replacements: %d",
+                summary.filesScanned(), ReportEntry.formatSize(summary.bytesScanned()), filesWritten,
+                replacementsWritten));
+        text.newLine();
+        text.write(String.format("Elapsed: %.1f s | Throughput: %.0f files/s, %s/s",
+                seconds, filesPerSecond, ReportEntry.formatSize((long) bytesPerSecond)));
+        text.newLine();
+
+        jsonLines.write(String.format(Locale.ROOT,
+                "{\"type\":\"summary\",\"status\":%s,\"filesScanned\":%d,\"bytesScanned\":%d,"
+                        + "\"filesWithForbiddenWords\":%d,\"replacements\":%d,\"duplicateFiles\":%d,"
+                        + "\"elapsedSeconds\":%.3f,\"filesPerSecond\":%.1f,\"bytesPerSecond\":%.0f}",
+                jsonString(summary.status()), summary.filesScanned(), summary.bytesScanned(), filesWritten,
+                replacementsWritten, dedup != null ? dedup.getDuplicateFiles() : 0,
+                seconds, filesPerSecond, bytesPerSecond));
+        jsonLines.newLine();
+    }
+
+    private void writeBreakdownLine(String label, List<Map.Entry<String, Long>> entries) throws IOException {
+        StringBuilder line = new StringBuilder("  ").append(label).append(": ");
+        for (int i = 0; i < entries.size(); i++) {
+            line.append(i > 0 ? ", " : "").append(entries.get(i).getKey()).append(" (")
+                    .append(entries.get(i).getValue()).append(')');
+        }
+        text.write(line.toString());
+        text.newLine();
+    }
+
+    /** Closes all three, even if one of them fails. */
+    private void closeAll() throws IOException {
+        try {
+            text.close();
+        } finally {
+            try {
+                csv.close();
+            } finally {
+                jsonLines.close();
+            }
+        }
+    }
+
+    // --- Escaping ---
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonObject(List<Map.Entry<String, Long>> entries) {
+        StringBuilder json = new StringBuilder("{");
+        for (int i = 0; i < entries.size(); i++) {
+            json.append(i > 0 ? "," : "").append(jsonString(entries.get(i).getKey())).append(':')
+                    .append(entries.get(i).getValue());
+        }
+        return json.append('}').toString();
+    }
+
+    /** The JSON Lines record of one file; ScanCommand streams the same records. */
+    static String fileRecord(String fileName, String directory, int count, long fileSize, String scanPath) {
+        return String.format(Locale.ROOT, "{\"type\":\"file\",\"file\":%s,\"directory\":%s,\"replacements\":%d,"
+                + "\"sizeBytes\":%d,\"scanPath\":%s}",
+                jsonString(fileName), jsonString(directory), count, fileSize, jsonString(scanPath));
+    }
+
+    static String jsonString(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+}
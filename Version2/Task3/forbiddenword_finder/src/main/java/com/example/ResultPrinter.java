@@ -0,0 +1,90 @@
+package com.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Set;
+
+/**
+ * Streams the rows of each frame of a scan to a writer, one line per file
+ * with forbidden words: tab separated text, or the report's JSON Lines
+ * records. ScanCommand prints to stdout or a file with it, ScanService to the
+ * output of a job; messages are only kept, subclasses decide where they go.
+ */
+class ResultPrinter implements ForbiddenFinderScan.Listener {
+    private final Writer out;
+    private final boolean json;
+    private ResultStore results;
+    private int printedRows = 0;
+    private volatile String lastMessage = "";
+
+    ResultPrinter(Writer out, boolean json) {
+        this.out = out;
+        this.json = json;
+    }
+
+    /** The scan's results; set before the scan runs. */
+    void setResults(ResultStore results) {
+        this.results = results;
+    }
+
+    /** How the scan ended, once it has. */
+    String getLastMessage() {
+        return lastMessage;
+    }
+
+    @Override
+    public void message(String message) {
+        lastMessage = message;
+    }
+
+    @Override
+    public void progress(long done, long total) {
+        // The message of the same frame has the numbers
+    }
+
+    @Override
+    public synchronized void rows(int storeSize, Set<Integer> removed) {
+        // Added first: a row can be added and removed in the same frame (watch mode)
+        flushRows(storeSize);
+        try {
+            for (int row : removed) {
+                out.write(json
+                        ? "{\"type\":\"removed\",\"path\":" + ReportWriter.jsonString(results.path(row)) + "}"
+                        : "removed\t" + results.path(row));
+                out.write(System.lineSeparator());
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Prints the store rows not printed yet, below {@code storeSize}. */
+    synchronized void flushRows(int storeSize) {
+        try {
+            results.forEachRow(printedRows, storeSize, (row, fileName, count, fileSize, directory, scanPath) -> {
+                out.write(json
+                        ? ReportWriter.fileRecord(fileName, directory, count, fileSize, scanPath)
+                        : count + "\t" + fileSize + "\t" + directory + File.separator + fileName);
+                out.write(System.lineSeparator());
+            });
+            printedRows = Math.max(printedRows, storeSize);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Prints a line of the runner's own between the rows, such as a job's progress record. */
+    synchronized void printLine(String line) {
+        try {
+            out.write(line);
+            out.write(System.lineSeparator());
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
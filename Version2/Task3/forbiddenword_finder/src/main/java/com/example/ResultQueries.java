@@ -0,0 +1,253 @@
+package com.example;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+/**
+ * Sorts and filters a {@link ResultStore} on its own thread and hands the
+ * table a ready list of row ids, so millions of rows never get sorted on the
+ * FX thread.
+ *
+ * Each sort order is computed once and kept: rows never change, so when the
+ * store has grown only the new rows are sorted and merged in. Removed rows
+ * and filters are applied while the kept order is walked; a word filter
+ * starts from that word's rows in the store.
+ */
+final class ResultQueries {
+
+    private static final long IDLE_SECONDS = 30; // the thread goes away when no one queries
+
+    /** The rows of a query, from a store that had {@code storeSize} rows. */
+    record Slice(int[] rows, int storeSize) {
+    }
+
+    private final ResultStore store;
+    private final ExecutorService executor;
+    private final AtomicLong latest = new AtomicLong(0);
+
+    // Query thread only
+    private final Map<ResultSort, int[]> orders = new EnumMap<>(ResultSort.class);
+
+    ResultQueries(ResultStore store) {
+        this.store = store;
+        this.executor = new ThreadPoolExecutor(0, 1, IDLE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "result-queries");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Runs the query on the query thread. {@code onReady} gets the slice there,
+     * unless a newer query was submitted meanwhile (typing in a filter only
+     * shows the last one).
+     */
+    void submit(ResultQuery query, Consumer<Slice> onReady) {
+        long id = latest.incrementAndGet();
+        executor.execute(() -> {
+            if (latest.get() != id)
+                return;
+            try {
+                Slice slice = run(query);
+                if (latest.get() == id) {
+                    onReady.accept(slice);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Result query failed: " + e);
+            }
+        });
+    }
+
+    /** Clears the kept orders, for a new scan over a cleared store. */
+    void reset() {
+        executor.execute(orders::clear);
+    }
+
+    private Slice run(ResultQuery query) {
+        ResultStore.Columns columns = store.columns();
+        int size = columns.size();
+
+        // 1. Filters; a word filter narrows the candidates to that word's rows
+        int[] withWord = query.word() != null ? store.rowsWithWord(query.word(), size) : null;
+        boolean[] inDirectory = query.directoryPrefix() != null
+                ? directoriesUnder(columns, query.directoryPrefix())
+                : null;
+        String name = query.fileNameContains();
+        BitSet removed = columns.removed();
+        IntPredicate keep = row -> !removed.get(row)
+                && (inDirectory == null || inDirectory[columns.directoryIds()[row]])
+                && (name == null || containsIgnoreCase(columns.fileNames()[row], name));
+
+        // 2. Walk the rows in the requested order
+        RowBuffer rows = new RowBuffer(withWord != null ? withWord.length : size - removed.cardinality());
+        if (query.sort() == ResultSort.FOUND_ORDER) {
+            if (withWord != null) {
+                for (int row : withWord) {
+                    rows.addIf(row, keep);
+                }
+            } else {
+                for (int row = 0; row < size; row++) {
+                    rows.addIf(row, keep);
+                }
+            }
+        } else if (withWord != null && withWord.length < size / 8) {
+            // A rare word: sorting its few rows beats walking the whole order
+            for (int row : sort(withWord, comparator(query.sort(), columns))) {
+                rows.addIf(row, keep);
+            }
+        } else {
+            BitSet candidates = null;
+            if (withWord != null) {
+                candidates = new BitSet(size);
+                for (int row : withWord) {
+                    candidates.set(row);
+                }
+            }
+            for (int row : order(query.sort(), columns)) {
+                if (candidates == null || candidates.get(row)) {
+                    rows.addIf(row, keep);
+                }
+            }
+        }
+        return new Slice(rows.toArray(), size);
+    }
+
+    /** The kept order for a sort, brought up to the store's current size. */
+    private int[] order(ResultSort sort, ResultStore.Columns columns) {
+        int[] order = orders.getOrDefault(sort, new int[0]);
+        int covered = order.length;
+        if (covered < columns.size()) {
+            int[] added = new int[columns.size() - covered];
+            for (int i = 0; i < added.length; i++) {
+                added[i] = covered + i;
+            }
+            RowComparator comparator = comparator(sort, columns);
+            added = sort(added, comparator);
+
+            int[] merged = new int[columns.size()];
+            merge(order, 0, covered, added, 0, added.length, merged, 0, comparator);
+            order = merged;
+            orders.put(sort, order);
+        }
+        return order;
+    }
+
+    // --- Sorting row ids ---
+
+    private interface RowComparator {
+        int compare(int rowA, int rowB);
+    }
+
+    private static RowComparator comparator(ResultSort sort, ResultStore.Columns columns) {
+        int[] counts = columns.counts();
+        long[] sizes = columns.sizes();
+        return switch (sort) {
+            case FOUND_ORDER -> Integer::compare;
+            case MOST_WORDS -> (a, b) -> Integer.compare(counts[b], counts[a]);
+            case LARGEST_FILES -> (a, b) -> Long.compare(sizes[b], sizes[a]);
+            case SMALLEST_FILES -> (a, b) -> Long.compare(sizes[a], sizes[b]);
+        };
+    }
+
+    /**
+     * Bottom-up merge sort on primitive row ids. Stable, so rows that compare
+     * equal stay in found order.
+     */
+    private static int[] sort(int[] rows, RowComparator comparator) {
+        int[] from = rows.clone();
+        int[] to = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int low = 0; low < rows.length; low += 2 * width) {
+                int middle = Math.min(low + width, rows.length);
+                int high = Math.min(low + 2 * width, rows.length);
+                merge(from, low, middle, from, middle, high, to, low, comparator);
+            }
+            int[] swap = from;
+            from = to;
+            to = swap;
+        }
+        return from;
+    }
+
+    /** Merges two sorted runs; on ties the first run goes first. */
+    private static void merge(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, int[] out, int outFrom,
+            RowComparator comparator) {
+        int i = aFrom;
+        int j = bFrom;
+        int k = outFrom;
+        while (i < aTo && j < bTo) {
+            out[k++] = comparator.compare(a[i], b[j]) <= 0 ? a[i++] : b[j++];
+        }
+        while (i < aTo) {
+            out[k++] = a[i++];
+        }
+        while (j < bTo) {
+            out[k++] = b[j++];
+        }
+    }
+
+    // --- Filters ---
+
+    /**
+     * Directory ids at or below the prefix directory (absolute, or relative to
+     * the search root). Whole names only: {@code src} is not {@code src-old}.
+     */
+    private static boolean[] directoriesUnder(ResultStore.Columns columns, String prefix) {
+        String absolute = new File(prefix).isAbsolute() ? prefix
+                : columns.searchDirectory() + File.separator + prefix;
+        boolean[] under = new boolean[columns.directories().size()];
+        for (int id = 0; id < under.length; id++) {
+            under[id] = isUnder(columns.directories().get(id), absolute);
+        }
+        return under;
+    }
+
+    static boolean isUnder(String directory, String prefix) {
+        if (!directory.startsWith(prefix))
+            return false;
+        return directory.length() == prefix.length() || prefix.endsWith(File.separator)
+                || directory.charAt(prefix.length()) == File.separatorChar;
+    }
+
+    static boolean containsIgnoreCase(String text, String part) {
+        for (int i = 0; i + part.length() <= text.length(); i++) {
+            if (text.regionMatches(true, i, part, 0, part.length()))
+                return true;
+        }
+        return false;
+    }
+
+    /** Collects the row ids that pass the filters. */
+    private static final class RowBuffer {
+        private int[] rows;
+        private int size = 0;
+
+        RowBuffer(int expected) {
+            rows = new int[Math.max(16, expected)];
+        }
+
+        void addIf(int row, IntPredicate keep) {
+            if (!keep.test(row))
+                return;
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(rows, size);
+        }
+    }
+}
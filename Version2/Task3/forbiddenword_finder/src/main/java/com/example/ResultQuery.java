@@ -0,0 +1,28 @@
+package com.example;
+
+/**
+ * What the result table shows: an order and up to three filters. A null or
+ * blank filter is off. The directory prefix may be absolute or relative to
+ * the search root; the file name and word filters ignore case.
+ */
+public record ResultQuery(ResultSort sort, String directoryPrefix, String fileNameContains, String word) {
+
+    /** Every row, in the order found: the live view. */
+    public static final ResultQuery ALL = new ResultQuery(ResultSort.FOUND_ORDER, null, null, null);
+
+    public ResultQuery {
+        directoryPrefix = emptyToNull(directoryPrefix);
+        fileNameContains = emptyToNull(fileNameContains);
+        word = emptyToNull(word);
+    }
+
+    /** True for the found order without filters, which new rows are simply appended to. */
+    public boolean isLive() {
+        return sort == ResultSort.FOUND_ORDER && directoryPrefix == null && fileNameContains == null
+                && word == null;
+    }
+
+    private static String emptyToNull(String filter) {
+        return filter == null || filter.isBlank() ? null : filter.strip();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example;
+
+import javafx.collections.ObservableListBase;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The table's view of a {@link ResultStore}: a list of row ids, 4 bytes per
+ * row. {@link #get} makes the ReportEntry of a row when the TableView asks
+ * for it, i.e. for the rows on screen, and keeps the last few hundred so
+ * scrolling does not rebuild them on every layout pass.
+ *
+ * While the live query ({@link ResultQuery#ALL}) is shown, new store rows
+ * are appended as they arrive. Any other query shows the slice
+ * {@link ResultQueries} computed; it is refreshed by running the query again.
+ *
+ * Read-only for the table; only changed on the FX thread, through
+ * {@link #update} and {@link #show}.
+ */
+final class ResultRows extends ObservableListBase<ReportEntry> {
+
+    private static final int ENTRY_CACHE_SIZE = 512; // a few screens of rows
+
+    private final ResultStore store;
+    private int[] rows = new int[1024];
+    private int size = 0;
+    private int published = 0; // store rows up to here are in the list (or were left out by the query)
+    private boolean live = true;
+
+    private final Map<Integer, ReportEntry> entries = new LinkedHashMap<>(ENTRY_CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, ReportEntry> eldest) {
+            return size() > ENTRY_CACHE_SIZE;
+        }
+    };
+
+    ResultRows(ResultStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public ReportEntry get(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return entries.computeIfAbsent(rows[index], store::entry);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Store row id of a list index. */
+    int rowAt(int index) {
+        return rows[index];
+    }
+
+    /**
+     * Appends the store rows added since the last update (up to
+     * {@code storeSize}), then drops the removed ones, as one change.
+     */
+    void update(int storeSize, Set<Integer> removed) {
+        if (storeSize == published && removed.isEmpty())
+            return;
+
+        beginChange();
+        try {
+            if (storeSize > published && live) {
+                if (size + storeSize - published > rows.length) {
+                    rows = Arrays.copyOf(rows, Math.max(rows.length * 2, size + storeSize - published));
+                }
+                int from = size;
+                for (int row = published; row < storeSize; row++) {
+                    rows[size++] = row;
+                }
+                published = storeSize;
+                nextAdd(from, size);
+            }
+
+            if (!removed.isEmpty()) {
+                int kept = 0;
+                for (int i = 0; i < size; i++) {
+                    if (removed.contains(rows[i])) {
+                        nextRemove(kept, entries.computeIfAbsent(rows[i], store::entry));
+                        entries.remove(rows[i]);
+                    } else {
+                        rows[kept++] = rows[i];
+                    }
+                }
+                size = kept;
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /** Replaces the list with a query result. Rows removed since the query ran stay out. */
+    void show(ResultQuery query, ResultQueries.Slice slice) {
+        int[] oldRows = Arrays.copyOf(rows, size);
+        BitSet removed = store.removedRows();
+        int[] newRows = slice.rows();
+        if (!removed.isEmpty()) {
+            newRows = Arrays.stream(newRows).filter(row -> !removed.get(row)).toArray();
+        }
+
+        beginChange();
+        try {
+            // The old rows only become entries if a listener asks for them
+            nextRemove(0, new AbstractList<ReportEntry>() {
+                @Override
+                public ReportEntry get(int index) {
+                    return store.entry(oldRows[index]);
+                }
+
+                @Override
+                public int size() {
+                    return oldRows.length;
+                }
+            });
+            rows = newRows.length > 0 ? newRows : new int[16];
+            size = newRows.length;
+            published = slice.storeSize();
+            live = query.isLive();
+            nextAdd(0, size);
+        } finally {
+            endChange();
+        }
+    }
+
+    /** Empties the list; call before the store itself is cleared. */
+    @Override
+    public void clear() {
+        if (size == 0 && published == 0)
+            return;
+        beginChange();
+        try {
+            for (int i = size - 1; i >= 0; i--) {
+                nextRemove(i, entries.computeIfAbsent(rows[i], store::entry));
+            }
+            size = 0;
+            published = 0;
+            live = true;
+            entries.clear();
+        } finally {
+            endChange();
+        }
+    }
+}
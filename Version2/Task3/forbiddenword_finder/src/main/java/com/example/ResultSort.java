@@ -0,0 +1,24 @@
+package com.example;
+
+/**
+ * Order of the result table. Every order but FOUND_ORDER is kept precomputed
+ * by {@link ResultQueries}, so changing it does not sort on the FX thread.
+ */
+public enum ResultSort {
+    /** The order the files were found in (the live view while scanning). */
+    FOUND_ORDER("Found order"),
+    MOST_WORDS("Most forbidden words"),
+    LARGEST_FILES("Largest files"),
+    SMALLEST_FILES("Smallest files");
+
+    private final String label;
+
+    ResultSort(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The files with forbidden words, stored column by column: primitive arrays
+ * for counts and sizes, and directories and scan paths as ids into
+ * dictionaries, so a directory with 10k hits stores its path once. A row
+ * costs its file name plus about 20 bytes, instead of a ReportEntry with six
+ * property objects. ReportEntry objects are only made for rows on screen
+ * ({@link ResultRows}).
+ *
+ * Rows are appended by the workers and never change; a removed row (watch
+ * mode) is only flagged, so row ids stay valid. That also makes
+ * {@link #columns} safe to read without the lock, which is how
+ * {@link ResultQueries} sorts and filters off the FX thread.
+ *
+ * Each row also goes into the row list of every word its file contains,
+ * with the word's count there. Word totals and breakdowns ({@link WordStats})
+ * are summed from those lists when the report is written, so the workers
+ * never share a counter.
+ */
+final class ResultStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The columns up to {@code size}, for reading without the lock: rows below
+     * it are never written again, and arrays replaced by a later growth still
+     * hold them.
+     */
+    record Columns(int size, String searchDirectory, String[] fileNames, int[] counts, long[] sizes,
+            int[] directoryIds, List<String> directories, BitSet removed) {
+    }
+
+    /** The rows of the files that contain one word, ascending, and the word's count in each. */
+    record WordRows(int[] rows, long[] counts) {
+    }
+
+    /** One live row, as handed to {@link #forEachRow}. */
+    interface RowVisitor {
+        void visit(int row, String fileName, int count, long fileSize, String directory, String scanPath)
+                throws IOException;
+    }
+
+    private final String searchDirectory;
+
+    private String[] fileNames = new String[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private int[] directoryIds = new int[INITIAL_CAPACITY];
+    private int[] scanPathIds = new int[INITIAL_CAPACITY];
+    private final BitSet removed = new BitSet();
+    private int size = 0;
+    private int removedCount = 0;
+
+    private final Dictionary directories = new Dictionary();
+    private final Dictionary scanPaths = new Dictionary();
+    // Per forbidden word, the rows of the files that contain it (ascending) and its count there
+    private final Dictionary words = new Dictionary();
+    private final List<RowList> rowsByWord = new ArrayList<>();
+
+    ResultStore(String searchDirectory) {
+        this.searchDirectory = searchDirectory;
+    }
+
+    /** Appends a file, the words it contains and their counts; returns its row id. */
+    int add(Path file, int count, long fileSize, String scanPath, String[] foundWords, long[] wordCounts) {
+        return add(file.getParent(), file.getFileName().toString(), count, fileSize, scanPath, foundWords,
+                wordCounts);
+    }
+
+    /**
+     * {@link #add(Path, int, long, String, String[], long[])} for a name that is
+     * not a file of its own, such as an archive entry ({@code app.jar!/a.txt}).
+     */
+    synchronized int add(Path directory, String fileName, int count, long fileSize, String scanPath,
+            String[] foundWords, long[] wordCounts) {
+        if (size == counts.length) {
+            int capacity = size * 2;
+            fileNames = Arrays.copyOf(fileNames, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            directoryIds = Arrays.copyOf(directoryIds, capacity);
+            scanPathIds = Arrays.copyOf(scanPathIds, capacity);
+        }
+        fileNames[size] = fileName;
+        counts[size] = count;
+        sizes[size] = fileSize;
+        directoryIds[size] = directories.id(directory.toAbsolutePath().toString());
+        scanPathIds[size] = scanPaths.id(scanPath);
+        for (int i = 0; i < foundWords.length; i++) {
+            int id = words.id(foundWords[i]);
+            if (id == rowsByWord.size()) {
+                rowsByWord.add(new RowList());
+            }
+            rowsByWord.get(id).add(size, wordCounts[i]);
+        }
+        return size++;
+    }
+
+    synchronized void remove(int row) {
+        if (!removed.get(row)) {
+            removed.set(row);
+            removedCount++;
+        }
+    }
+
+    synchronized void clear() {
+        Arrays.fill(fileNames, 0, size, null);
+        removed.clear();
+        size = 0;
+        removedCount = 0;
+        directories.clear();
+        scanPaths.clear();
+        words.clear();
+        rowsByWord.clear();
+    }
+
+    /** Rows ever added; every id below this is valid. */
+    synchronized int size() {
+        return size;
+    }
+
+    /** Rows that have not been removed. */
+    synchronized int liveCount() {
+        return size - removedCount;
+    }
+
+    synchronized Columns columns() {
+        return new Columns(size, searchDirectory, fileNames, counts, sizes, directoryIds,
+                List.copyOf(directories.values), (BitSet) removed.clone());
+    }
+
+    /** Rows below {@code limit} whose file contains the word (any case), ascending. */
+    synchronized int[] rowsWithWord(String word, int limit) {
+        for (int id = 0; id < words.values.size(); id++) {
+            if (words.value(id).equalsIgnoreCase(word)) {
+                return rowsByWord.get(id).below(limit);
+            }
+        }
+        return new int[0];
+    }
+
+    /** Every word found so far. */
+    synchronized List<String> words() {
+        return List.copyOf(words.values);
+    }
+
+    /** A copy of the word's row list (removed rows included), or null if no file had it. */
+    synchronized WordRows wordRows(String word) {
+        Integer id = words.ids.get(word);
+        return id != null ? rowsByWord.get(id).copy() : null;
+    }
+
+    /** Removed rows so far (a copy). */
+    synchronized BitSet removedRows() {
+        return (BitSet) removed.clone();
+    }
+
+    synchronized int count(int row) {
+        return counts[row];
+    }
+
+    synchronized long fileSize(int row) {
+        return sizes[row];
+    }
+
+    /** A fresh ReportEntry for the table; it is not kept here. */
+    synchronized ReportEntry entry(int row) {
+        return new ReportEntry(fileNames[row], counts[row], directories.value(directoryIds[row]),
+                searchDirectory, sizes[row], scanPaths.value(scanPathIds[row]));
+    }
+
+    /** Short text for the debug log. */
+    synchronized String describe(int row) {
+        return path(row) + " (" + counts[row] + ")";
+    }
+
+    /** The full path of a row's file (removed rows included). */
+    synchronized String path(int row) {
+        return directories.value(directoryIds[row]) + java.io.File.separator + fileNames[row];
+    }
+
+    /**
+     * Visits the live rows in the order they were added, straight from the
+     * columns. The lock is only held while a row is read, not while it is
+     * visited, so workers can keep adding meanwhile.
+     */
+    void forEachRow(RowVisitor visitor) throws IOException {
+        forEachRow(0, size(), visitor);
+    }
+
+    /** {@link #forEachRow(RowVisitor)} for the rows in {@code [from, to)}. */
+    void forEachRow(int from, int to, RowVisitor visitor) throws IOException {
+        for (int row = from; row < to; row++) {
+            String fileName;
+            int count;
+            long fileSize;
+            String directory;
+            String scanPath;
+            synchronized (this) {
+                if (removed.get(row))
+                    continue;
+                fileName = fileNames[row];
+                count = counts[row];
+                fileSize = sizes[row];
+                directory = directories.value(directoryIds[row]);
+                scanPath = scanPaths.value(scanPathIds[row]);
+            }
+            visitor.visit(row, fileName, count, fileSize, directory, scanPath);
+        }
+    }
+
+    /** Growable list of row ids and counts; callers hold the store's lock. */
+    private static final class RowList {
+        private int[] rows = new int[16];
+        private long[] counts = new long[16];
+        private int size = 0;
+
+        void add(int row, long count) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            rows[size] = row;
+            counts[size++] = count;
+        }
+
+        WordRows copy() {
+            return new WordRows(Arrays.copyOf(rows, size), Arrays.copyOf(counts, size));
+        }
+
+        int[] below(int limit) {
+            int end = size;
+            while (end > 0 && rows[end - 1] >= limit) {
+                end--;
+            }
+            return Arrays.copyOf(rows, end);
+        }
+    }
+
+    /** Distinct strings by id; callers hold the store's lock. */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        int id(String value) {
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+            }
+            return id;
+        }
+
+        String value(int id) {
+            return values.get(id);
+        }
+
+        void clear() {
+            ids.clear();
+            values.clear();
+        }
+    }
+}
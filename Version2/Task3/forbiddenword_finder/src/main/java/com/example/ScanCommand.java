@@ -0,0 +1,260 @@
+package com.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+
+/**
+ * Runs a scan from the command line, for cron and CI: the same
+ * {@link ForbiddenFinderScan} as the app, without the JavaFX toolkit (the
+ * FX classes are never loaded, so they need not be on the class path).
+ * Files with forbidden words are streamed to stdout (or a file) as they are
+ * found, as text or as the report's JSON Lines records; the report and the
+ * masked files go to the output directory as usual.
+ *
+ * Usage: {@code java -cp forbiddenword_finder.jar com.example.ScanCommand
+ * <directory> <forbidden words file> <output directory> [options]}, see
+ * {@link #USAGE}. Ctrl-C stops the scan (or watching) and still finishes
+ * the report.
+ *
+ * Exit code: 0 when the scan completed, 1 with {@code --fail-on-hits} and
+ * forbidden words found, 2 for bad arguments (a forbidden words file that
+ * cannot be read or a results file that cannot be written included), 3 when
+ * the scan failed or was stopped.
+ */
+public final class ScanCommand {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: ScanCommand <directory> <forbidden words file> <output directory> [options]",
+            "  --engine SEQUENTIAL|FIXED_POOL|VIRTUAL_THREADS|FORK_JOIN|PIPELINE  (default FIXED_POOL)",
+            "  --scan-mode DECODED|MAPPED_BYTES     --output-mode FULL_COPIES|PATCH_SIDECAR",
+            "  --include-ext a,b   --exclude-ext a,b   --include-glob g   --exclude-glob g  (globs repeat)",
+            "  --min-size bytes    --max-size bytes    --top-words n",
+            "  --incremental  --dedup  --watch  --archives  --no-ignore-files  --no-binary-detection",
+            "  --results file      where found files are streamed (default stdout)",
+            "  --format text|jsonl (default text: replacements, size in bytes, path; tab separated)",
+            "  --progress          progress messages on stderr",
+            "  --jmx               register the scan monitor over JMX (slower start)",
+            "  --fail-on-hits      exit code 1 if any file has forbidden words");
+
+    private static final int EXIT_HITS = 1;
+    private static final int EXIT_USAGE = 2;
+    private static final int EXIT_FAILED = 3;
+
+    private final ScanOptions options = new ScanOptions();
+    private final List<String> includeGlobs = new ArrayList<>();
+    private final List<String> excludeGlobs = new ArrayList<>();
+    private final boolean job; // ScanService: the output options belong to the job's response
+    private Path resultsFile;
+    private boolean json = false;
+    private boolean progress = false;
+    private boolean failOnHits = false;
+
+    private ScanCommand(boolean job) {
+        this.job = job;
+        // A one-off run is watched through its output, not JMX
+        options.setJmxMonitor(false);
+    }
+
+    public static void main(String[] args) {
+        System.exit(execute(args));
+    }
+
+    /**
+     * Parses the arguments and runs the scan; returns the exit code. Nothing
+     * that goes wrong ends up as {@link #EXIT_HITS}: a script must be able to
+     * tell "forbidden words found" from a broken run.
+     */
+    static int execute(String[] args) {
+        ScanCommand command;
+        Path directory;
+        Path outputDirectory;
+        try {
+            command = parse(args, false);
+            directory = Paths.get(args[0]);
+            outputDirectory = Paths.get(args[2]);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        Set<String> forbiddenWords;
+        try {
+            forbiddenWords = new HashSet<>(Files.readAllLines(Paths.get(args[1])));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Cannot read the forbidden words file " + args[1] + ": " + reason(e));
+            return EXIT_USAGE;
+        }
+
+        try {
+            return command.run(directory, forbiddenWords, outputDirectory);
+        } catch (IOException | UncheckedIOException e) {
+            // The results output broke while (or after) the scan ran
+            System.err.println("Could not write the results: " + reason(e));
+            return EXIT_FAILED;
+        }
+    }
+
+    /** What went wrong, in one line; for a missing or locked file the type says more than the message. */
+    private static String reason(Exception e) {
+        Throwable cause = e instanceof UncheckedIOException ? e.getCause() : e;
+        if (cause instanceof NoSuchFileException)
+            return "no such file";
+        if (cause instanceof AccessDeniedException)
+            return "permission denied";
+        if (cause instanceof FileSystemException && ((FileSystemException) cause).getReason() != null)
+            return ((FileSystemException) cause).getReason();
+        return String.valueOf(cause.getMessage());
+    }
+
+    /**
+     * Reads the options after the three paths of {@code args}. For a job of
+     * ScanService, the options about where results go are refused.
+     *
+     * @throws IllegalArgumentException for missing paths or a bad option
+     */
+    static ScanCommand parse(String[] args, boolean job) {
+        if (args.length < 3)
+            throw new IllegalArgumentException("A directory, a forbidden words file and an output directory are needed");
+        ScanCommand command = new ScanCommand(job);
+        for (int i = 3; i < args.length; i++) {
+            i = command.set(args, i);
+        }
+        command.options.setIncludeGlobs(command.includeGlobs);
+        command.options.setExcludeGlobs(command.excludeGlobs);
+        return command;
+    }
+
+    /** The scan options the arguments give. */
+    ScanOptions getOptions() {
+        return options;
+    }
+
+    /** Applies the option at {@code args[i]}; returns the index of its last argument. */
+    private int set(String[] args, int i) {
+        String option = args[i];
+        if (job && Set.of("--results", "--format", "--progress", "--fail-on-hits").contains(option))
+            throw new IllegalArgumentException("Not an option of a job (its results are the response): " + option);
+        switch (option) {
+            case "--incremental" -> options.setIncremental(true);
+            case "--dedup" -> options.setDeduplicate(true);
+            case "--watch" -> options.setWatch(true);
+            case "--archives" -> options.setScanArchives(true);
+            case "--no-ignore-files" -> options.setUseIgnoreFiles(false);
+            case "--no-binary-detection" -> options.setDetectBinary(false);
+            case "--progress" -> progress = true;
+            case "--fail-on-hits" -> failOnHits = true;
+            case "--jmx" -> options.setJmxMonitor(true);
+            default -> {
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException("Unknown option or missing value: " + option);
+                String value = args[++i];
+                switch (option) {
+                    case "--engine" -> options.setScanEngine(ScanEngine.valueOf(value));
+                    case "--scan-mode" -> options.setScanMode(ScanMode.valueOf(value));
+                    case "--output-mode" -> options.setOutputMode(OutputMode.valueOf(value));
+                    case "--include-ext" -> options.setIncludeExtensions(extensions(value));
+                    case "--exclude-ext" -> options.setExcludeExtensions(extensions(value));
+                    case "--include-glob" -> includeGlobs.add(value);
+                    case "--exclude-glob" -> excludeGlobs.add(value);
+                    case "--min-size" -> options.setMinFileSize(Long.parseLong(value));
+                    case "--max-size" -> options.setMaxFileSize(Long.parseLong(value));
+                    case "--top-words" -> options.setTopWords(Integer.parseInt(value));
+                    case "--results" -> resultsFile = Paths.get(value);
+                    case "--format" -> json = switch (value) {
+                        case "text" -> false;
+                        case "jsonl" -> true;
+                        default -> throw new IllegalArgumentException("Unknown format: " + value);
+                    };
+                    default -> throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+        }
+        return i;
+    }
+
+    private static Set<String> extensions(String list) {
+        return Arrays.stream(list.split(",")).map(String::strip).filter(e -> !e.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    /** Runs the scan on this thread; returns the exit code. */
+    private int run(Path directory, Set<String> forbiddenWords, Path outputDirectory) throws IOException {
+        Writer out;
+        try {
+            out = resultsFile != null
+                    ? Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8)
+                    : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("Cannot write the results file " + resultsFile + ": " + reason(e));
+            return EXIT_USAGE;
+        }
+        try (out) {
+            ResultPrinter printer = new ResultPrinter(out, json) {
+                @Override
+                public void message(String message) {
+                    super.message(message);
+                    if (progress) {
+                        System.err.println(message);
+                    }
+                }
+            };
+            ForbiddenFinderScan scan = new ForbiddenFinderScan(directory, forbiddenWords, outputDirectory, options,
+                    printer);
+            printer.setResults(scan.getResults());
+
+            // Ctrl-C: stop the scan, then let it finish the report before the JVM goes
+            CountDownLatch finished = new CountDownLatch(1);
+            Thread stopper = new Thread(() -> {
+                scan.cancel();
+                try {
+                    finished.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "scan-stopper");
+            Runtime.getRuntime().addShutdownHook(stopper);
+
+            boolean ok;
+            try {
+                try {
+                    scan.run();
+                    ok = !scan.isCancelled() || options.isWatch(); // Watching always ends with a stop
+                } catch (Exception e) {
+                    System.err.println("Scan failed: " + e);
+                    ok = false;
+                }
+                printer.flushRows(scan.getResults().size());
+                System.err.println(printer.getLastMessage());
+            } finally {
+                finished.countDown();
+            }
+            try {
+                Runtime.getRuntime().removeShutdownHook(stopper);
+            } catch (IllegalStateException e) {
+                // Already shutting down: the hook is running
+            }
+
+            if (!ok)
+                return EXIT_FAILED;
+            return failOnHits && scan.getResults().liveCount() > 0 ? EXIT_HITS : 0;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example;
+
+/**
+ * How the search tree is walked and its files spread over threads. Chosen per scan.
+ */
+public enum ScanEngine {
+    /** One thread walks and scans, file after file (the Version1 approach). */
+    SEQUENTIAL("Sequential"),
+    /** A streaming walker feeds a fixed pool of 2 x cores workers. */
+    FIXED_POOL("Fixed thread pool"),
+    /**
+     * One virtual thread per file, for slow (e.g. network) storage. In-flight
+     * I/O is capped by open files and bytes in flight, not by thread count.
+     */
+    VIRTUAL_THREADS("Virtual threads"),
+    /** Every directory is a fork/join task; idle workers steal whole subtrees. */
+    FORK_JOIN("Fork/join work stealing"),
+    /**
+     * Separate read, match and write stages, each with its own threads and a
+     * bounded queue in front, so disks and cores are busy at the same time.
+     */
+    PIPELINE("Read / match / write pipeline");
+
+    private final String label;
+
+    ScanEngine(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Custom JFR events of a scan, to profile slow scans with standard tools:
+ * {@code java -XX:StartFlightRecording:filename=scan.jfr ...}, then JDK
+ * Mission Control or {@code jfr print --categories "Forbidden Finder"}.
+ * Events that are not enabled cost next to nothing.
+ */
+final class ScanEvents {
+
+    private static final String CATEGORY = "Forbidden Finder";
+
+    private ScanEvents() {
+    }
+
+    @Name("com.example.FileScanned")
+    @Label("File Scanned")
+    @Category(CATEGORY)
+    @Description("One file, from its stat to its result; the duration covers lookups, scan and output")
+    @StackTrace(false)
+    static final class FileScanned extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Matches")
+        long matches;
+
+        @Label("Read Time")
+        @Description("Reading into memory; 0 where the match streams the file itself (mapped, chunked or decoded)")
+        @Timespan
+        long readTime;
+
+        @Label("Match Time")
+        @Timespan
+        long matchTime;
+    }
+
+    @Name("com.example.DirectoryListed")
+    @Label("Directory Listed")
+    @Category(CATEGORY)
+    @Description("A directory and its files; with the walking engines the duration covers its whole subtree")
+    @StackTrace(false)
+    static final class DirectoryListed extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Files")
+        int files;
+    }
+
+    @Name("com.example.OutputWritten")
+    @Label("Output Written")
+    @Category(CATEGORY)
+    @Description("A file written to the output directory; the duration covers writing and publishing it")
+    @StackTrace(false)
+    static final class OutputWritten extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Kind")
+        String kind;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+    }
+
+    /** Commits an output event for a written file; its size is only looked up when the event is recorded. */
+    static void outputWritten(OutputWritten event, Path target, String kind) {
+        if (!event.shouldCommit())
+            return;
+        event.path = target.toString();
+        event.kind = kind;
+        try {
+            event.bytes = Files.size(target);
+        } catch (IOException e) {
+            event.bytes = -1;
+        }
+        event.commit();
+    }
+}
@@ -0,0 +1,301 @@
+package com.example;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk index of earlier scan results, kept in the output directory so a
+ * re-run only scans files that changed.
+ *
+ * The file is an append-only log of binary records: a word record gives a
+ * forbidden word an index-local id, a file record stores one file's size,
+ * mtime, content hash, dictionary fingerprint and result (match count and
+ * per-word counts). A later record for the same path replaces an earlier one.
+ * Loading is one sequential read; a record cut short by a crash is ignored,
+ * and a log with a record that makes no sense is dropped and rebuilt.
+ * When most records are stale, the index is rewritten with the live ones.
+ */
+final class ScanIndex implements Closeable {
+
+    static final String FILE_NAME = "scan-index.bin";
+
+    private static final int MAGIC = 0x46464958; // "FFIX"
+    private static final int VERSION = 1;
+    private static final byte WORD_RECORD = 'W';
+    private static final byte FILE_RECORD = 'F';
+
+    /** One file's cached result. */
+    static final class Entry {
+        final long size;
+        final long modified;
+        final long contentHash;
+        final long fingerprint;
+        final long count;
+        final String[] words; // words with at least one match
+        final long[] wordCounts;
+        volatile boolean seen; // looked at during this run (kept on compaction)
+
+        Entry(long size, long modified, long contentHash, long fingerprint, long count,
+                String[] words, long[] wordCounts) {
+            this.size = size;
+            this.modified = modified;
+            this.contentHash = contentHash;
+            this.fingerprint = fingerprint;
+            this.count = count;
+            this.words = words;
+            this.wordCounts = wordCounts;
+        }
+    }
+
+    private final Path indexFile;
+    private final long fingerprint;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final List<String> wordTable = new ArrayList<>(); // index word id -> word
+    private final Map<String, Integer> wordIds = new HashMap<>();
+    private DataOutputStream out;
+    private long recordCount = 0;
+
+    private ScanIndex(Path indexFile, long fingerprint) {
+        this.indexFile = indexFile;
+        this.fingerprint = fingerprint;
+    }
+
+    /** Loads the index from {@code outputDirectory} (if any) and opens it for appending. */
+    static ScanIndex open(Path outputDirectory, WordMatcher matcher) throws IOException {
+        ScanIndex index = new ScanIndex(outputDirectory.resolve(FILE_NAME), fingerprint(matcher));
+        boolean valid = Files.exists(index.indexFile) && index.load();
+        if (valid) {
+            index.out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(index.indexFile, StandardOpenOption.APPEND)));
+        } else {
+            index.rewrite();
+        }
+        return index;
+    }
+
+    /**
+     * The cached result for this file, if it is still valid: same dictionary,
+     * same size, and either the same mtime or (after a touch) the same content.
+     */
+    Entry lookup(Path file, long size, long modified) throws IOException {
+        Entry entry = entries.get(key(file));
+        if (entry == null || entry.fingerprint != fingerprint || entry.size != size)
+            return null;
+        if (entry.modified != modified) {
+            long hash = ContentHash.of(file);
+            if (hash != entry.contentHash)
+                return null;
+            // Same bytes, new mtime: remember it so the next run skips the hash too
+            entry = append(key(file), new Entry(size, modified, hash, fingerprint, entry.count,
+                    entry.words, entry.wordCounts));
+        }
+        entry.seen = true;
+        return entry;
+    }
+
+    /** Stores a freshly scanned file's result. */
+    void record(Path file, long size, long modified, long contentHash, WordMatcher matcher, long[] hits)
+            throws IOException {
+        int matched = 0;
+        long count = 0;
+        for (long hit : hits) {
+            if (hit > 0) {
+                matched++;
+                count += hit;
+            }
+        }
+        String[] words = new String[matched];
+        long[] wordCounts = new long[matched];
+        for (int id = 0, i = 0; id < hits.length; id++) {
+            if (hits[id] > 0) {
+                words[i] = matcher.word(id);
+                wordCounts[i++] = hits[id];
+            }
+        }
+        append(key(file), new Entry(size, modified, contentHash, fingerprint, count, words, wordCounts));
+    }
+
+    /**
+     * Flushes the index. After a complete run, an index with more stale than
+     * live records is rewritten without the stale ones (and without files that
+     * no longer exist).
+     */
+    void close(boolean completed) throws IOException {
+        if (out == null)
+            return;
+        out.close();
+        out = null;
+
+        if (completed) {
+            long live = entries.values().stream().filter(e -> e.seen).count();
+            if (recordCount > 2 * live + 1024) {
+                entries.values().removeIf(e -> !e.seen);
+                rewrite();
+                out.close();
+                out = null;
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(false);
+    }
+
+    // --- Reading and writing ---
+
+    private synchronized Entry append(String path, Entry entry) throws IOException {
+        entry.seen = true;
+        writeEntry(path, entry);
+        entries.put(path, entry);
+        return entry;
+    }
+
+    private void writeEntry(String path, Entry entry) throws IOException {
+        int[] ids = new int[entry.words.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = wordId(entry.words[i]);
+        }
+        out.writeByte(FILE_RECORD);
+        out.writeUTF(path);
+        out.writeLong(entry.size);
+        out.writeLong(entry.modified);
+        out.writeLong(entry.contentHash);
+        out.writeLong(entry.fingerprint);
+        out.writeLong(entry.count);
+        out.writeInt(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            out.writeInt(ids[i]);
+            out.writeLong(entry.wordCounts[i]);
+        }
+        recordCount++;
+    }
+
+    private int wordId(String word) throws IOException {
+        Integer id = wordIds.get(word);
+        if (id == null) {
+            id = wordTable.size();
+            wordTable.add(word);
+            wordIds.put(word, id);
+            out.writeByte(WORD_RECORD);
+            out.writeInt(id);
+            out.writeUTF(word);
+            recordCount++;
+        }
+        return id;
+    }
+
+    /**
+     * Reads every record. Returns false if the file is not an index of this
+     * version, ends in a partial record or is corrupted; the caller then
+     * rewrites it with whatever could be read (nothing, if corrupted).
+     */
+    private boolean load() throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(indexFile), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return false;
+
+            while (true) {
+                int type = in.read();
+                if (type < 0)
+                    break;
+                if (type == WORD_RECORD) {
+                    int id = in.readInt();
+                    String word = in.readUTF();
+                    if (id != wordTable.size())
+                        return corrupted();
+                    wordTable.add(word);
+                    wordIds.put(word, id);
+                } else if (type == FILE_RECORD) {
+                    String path = in.readUTF();
+                    long size = in.readLong();
+                    long modified = in.readLong();
+                    long contentHash = in.readLong();
+                    long entryFingerprint = in.readLong();
+                    long count = in.readLong();
+                    // A file matches each word at most once, so more ids than words is garbage
+                    int matched = in.readInt();
+                    if (matched < 0 || matched > wordTable.size())
+                        return corrupted();
+                    String[] words = new String[matched];
+                    long[] wordCounts = new long[matched];
+                    for (int i = 0; i < matched; i++) {
+                        int id = in.readInt();
+                        if (id < 0 || id >= wordTable.size())
+                            return corrupted();
+                        words[i] = wordTable.get(id);
+                        wordCounts[i] = in.readLong();
+                    }
+                    entries.put(path, new Entry(size, modified, contentHash, entryFingerprint, count,
+                            words, wordCounts));
+                } else {
+                    return corrupted();
+                }
+                recordCount++;
+            }
+        } catch (EOFException e) {
+            // Last record was cut short (crash or kill mid-write): keep everything before it
+            return false;
+        } catch (UTFDataFormatException | RuntimeException e) {
+            return corrupted();
+        }
+        return true;
+    }
+
+    /** Forgets everything read so far: none of it can be trusted. */
+    private boolean corrupted() {
+        System.err.println("Scan index " + indexFile + " is corrupted; rebuilding it");
+        entries.clear();
+        wordTable.clear();
+        wordIds.clear();
+        recordCount = 0;
+        return false;
+    }
+
+    /** Writes a fresh index holding only the current entries, then swaps it in. */
+    private void rewrite() throws IOException {
+        Path tempFile = indexFile.resolveSibling(FILE_NAME + ".tmp");
+        wordTable.clear();
+        wordIds.clear();
+        recordCount = 0;
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            writeEntry(e.getKey(), e.getValue());
+        }
+        out.close();
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+        out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(indexFile, StandardOpenOption.APPEND)));
+    }
+
+    private static String key(Path file) {
+        return file.toAbsolutePath().toString();
+    }
+
+    /** Identifies the dictionary; results recorded under another one are not reused. */
+    static long fingerprint(WordMatcher matcher) {
+        String[] words = new String[matcher.size()];
+        for (int id = 0; id < words.length; id++) {
+            words[id] = matcher.word(id);
+        }
+        Arrays.sort(words);
+        long hash = 0xcbf29ce484222325L; // 64-bit FNV-1a
+        for (String word : words) {
+            for (byte b : word.getBytes(StandardCharsets.UTF_8)) {
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            hash = (hash ^ '\n') * 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example;
+
+/**
+ * How a file's content is fed to the matcher. Chosen per scan; each
+ * ReportEntry records the path its file actually took.
+ */
+public enum ScanMode {
+    /** Decode the file line by line with a BufferedReader (the original path). */
+    DECODED("Decoded text"),
+    /**
+     * Map the file with FileChannel.map and match directly on its ASCII / UTF-8
+     * bytes. Files that need real charset decoding fall back to DECODED.
+     */
+    MAPPED_BYTES("Memory-mapped bytes");
+
+    private final String label;
+
+    ScanMode(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,161 @@
+package com.example;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * The {@link ScanMonitorMXBean} of one task. It mostly reads what the scan
+ * keeps anyway (the UI channel's counters, the result store); workers only
+ * add the in-flight count. Rates are worked out when they are read.
+ */
+final class ScanMonitor implements ScanMonitorMXBean {
+
+    private static final AtomicInteger SCANS = new AtomicInteger(0);
+    private static final long RATE_WINDOW_NANOS = 1_000_000_000L;
+
+    private final ScanEngine engine;
+    private final UiUpdateChannel updates;
+    private final ResultStore results;
+    private final BooleanSupplier paused;
+    private final LongAdder inFlight = new LongAdder();
+    private final Map<String, IntSupplier> queues = new ConcurrentHashMap<>();
+    private ObjectName name;
+
+    // Last rate sample, guarded by this
+    private long sampleNanos = System.nanoTime();
+    private long sampleFiles = 0;
+    private long sampleBytes = 0;
+    private double filesPerSecond = 0;
+    private double bytesPerSecond = 0;
+
+    ScanMonitor(ScanEngine engine, UiUpdateChannel updates, ResultStore results, BooleanSupplier paused) {
+        this.engine = engine;
+        this.updates = updates;
+        this.results = results;
+        this.paused = paused;
+    }
+
+    /** Registers with the platform MBean server; a scan without JMX still runs. */
+    void register() {
+        try {
+            name = new ObjectName("com.example:type=ForbiddenFinderScan,name=scan-" + SCANS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException | SecurityException e) {
+            System.err.println("Scan monitor not available over JMX: " + e.getMessage());
+            name = null;
+        }
+    }
+
+    void unregister() {
+        if (name == null)
+            return;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            System.err.println("Could not unregister the scan monitor: " + e.getMessage());
+        }
+        name = null;
+    }
+
+    // --- Called by the scan ---
+
+    void fileStarted() {
+        inFlight.increment();
+    }
+
+    void fileFinished() {
+        inFlight.decrement();
+    }
+
+    /** Shows a queue's depth while the engine that owns it runs. */
+    void addQueue(String queue, IntSupplier depth) {
+        queues.put(queue, depth);
+    }
+
+    void removeQueue(String queue) {
+        queues.remove(queue);
+    }
+
+    // --- MXBean ---
+
+    @Override
+    public String getEngine() {
+        return engine.toString();
+    }
+
+    @Override
+    public long getFilesProcessed() {
+        return updates.getFilesDone();
+    }
+
+    @Override
+    public long getBytesProcessed() {
+        return updates.getBytesDone();
+    }
+
+    @Override
+    public synchronized double getFilesPerSecond() {
+        sampleRates();
+        return filesPerSecond;
+    }
+
+    @Override
+    public synchronized double getBytesPerSecond() {
+        sampleRates();
+        return bytesPerSecond;
+    }
+
+    @Override
+    public long getFilesInFlight() {
+        return inFlight.sum();
+    }
+
+    @Override
+    public Map<String, Integer> getQueueDepths() {
+        Map<String, Integer> depths = new TreeMap<>();
+        queues.forEach((queue, depth) -> depths.put(queue, depth.getAsInt()));
+        return depths;
+    }
+
+    @Override
+    public boolean isPaused() {
+        return paused.getAsBoolean();
+    }
+
+    @Override
+    public long getFilesWithForbiddenWords() {
+        return results.liveCount();
+    }
+
+    @Override
+    public Map<String, Long> getWordCounts() {
+        return new TreeMap<>(new WordStats(results).totals());
+    }
+
+    /** Starts a new rate window once the current one is a second old. */
+    private void sampleRates() {
+        long now = System.nanoTime();
+        long elapsed = now - sampleNanos;
+        if (elapsed < RATE_WINDOW_NANOS)
+            return;
+        long files = updates.getFilesDone();
+        long bytes = updates.getBytesDone();
+        filesPerSecond = (files - sampleFiles) * 1e9 / elapsed;
+        bytesPerSecond = (bytes - sampleBytes) * 1e9 / elapsed;
+        sampleNanos = now;
+        sampleFiles = files;
+        sampleBytes = bytes;
+    }
+}
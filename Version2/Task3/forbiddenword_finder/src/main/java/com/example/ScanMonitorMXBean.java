@@ -0,0 +1,35 @@
+package com.example;
+
+import java.util.Map;
+
+/**
+ * Live counters of a running scan over JMX, e.g. in JConsole or VisualVM
+ * under {@code com.example:type=ForbiddenFinderScan}. Registered for as long
+ * as a ForbiddenFinderTask runs.
+ */
+public interface ScanMonitorMXBean {
+
+    String getEngine();
+
+    long getFilesProcessed();
+
+    long getBytesProcessed();
+
+    /** Over the last second or so (between two reads at least a second apart). */
+    double getFilesPerSecond();
+
+    double getBytesPerSecond();
+
+    /** Files looked up or being scanned right now. */
+    long getFilesInFlight();
+
+    /** Entries waiting in each of the engine's queues. */
+    Map<String, Integer> getQueueDepths();
+
+    boolean isPaused();
+
+    long getFilesWithForbiddenWords();
+
+    /** Matches per forbidden word so far (summed on each read). */
+    Map<String, Long> getWordCounts();
+}
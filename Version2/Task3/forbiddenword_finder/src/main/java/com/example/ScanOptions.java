@@ -0,0 +1,146 @@
+package com.example;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Per-scan settings for ForbiddenFinderTask. The defaults give the original
+ * behaviour, decoded text on a fixed thread pool, except that files which are
+ * not text (by extension or content) are skipped.
+ */
+public class ScanOptions {
+
+    private ScanMode scanMode = ScanMode.DECODED;
+    private ScanEngine scanEngine = ScanEngine.FIXED_POOL;
+    private OutputMode outputMode = OutputMode.FULL_COPIES;
+
+    // Virtual-thread engine: in-flight I/O is limited by these, not by thread count
+    private int maxOpenFiles = 256;
+    private long maxBytesInFlight = 256L * 1024 * 1024;
+
+    // Pipeline engine: threads per stage and the size of the queues between stages
+    private int readThreads = 4;
+    private int matchThreads = Runtime.getRuntime().availableProcessors();
+    private int writeThreads = 2;
+    private int stageQueueCapacity = 64;
+
+    // Files at least this big are split into chunks that are scanned in parallel
+    private long chunkThreshold = 256L * 1024 * 1024;
+    private long chunkSize = 32L * 1024 * 1024;
+
+    // Keep a ScanIndex in the output directory and skip files unchanged since the last run
+    private boolean incremental = false;
+
+    // Scan each distinct content once; identical copies reuse its result and output
+    private boolean deduplicate = false;
+
+    // Print every file with forbidden words (batched once per UI frame)
+    private boolean debugLog = false;
+
+    // Register a ScanMonitor over JMX while the scan runs (starting the platform MBean server costs ~0.4 s)
+    private boolean jmxMonitor = true;
+
+    // After the first scan, keep watching the tree and rescan files as they change
+    private boolean watch = false;
+
+    // How many of the most popular forbidden words the report lists
+    private int topWords = 10;
+
+    // Which files are scanned at all (FileClassifier); empty include lists mean every file
+    private Set<String> includeExtensions = Set.of();
+    private Set<String> excludeExtensions = Set.of("png", "jpg", "jpeg", "gif", "bmp", "ico", "webp", "mp3", "mp4",
+            "avi", "mov", "zip", "jar", "war", "gz", "tgz", "7z", "rar", "class", "so", "dll", "exe", "o", "a",
+            "db", "sqlite", "woff", "woff2", "ttf", "otf");
+    private List<String> includeGlobs = List.of();
+    private List<String> excludeGlobs = List.of();
+    private long minFileSize = 0;
+    private long maxFileSize = Long.MAX_VALUE;
+    // Skip files whose first bytes are not text
+    private boolean detectBinary = true;
+    // Honour .gitignore files and a .forbiddenignore in the search root (IgnoreRules)
+    private boolean useIgnoreFiles = true;
+    // Scan the entries of zip / jar / gzip files (ArchiveScanner); the depth counts the file itself
+    private boolean scanArchives = false;
+    private int maxArchiveDepth = 3;
+
+    public ScanMode getScanMode() { return scanMode; }
+    public void setScanMode(ScanMode scanMode) { this.scanMode = scanMode; }
+
+    public ScanEngine getScanEngine() { return scanEngine; }
+    public void setScanEngine(ScanEngine scanEngine) { this.scanEngine = scanEngine; }
+
+    public OutputMode getOutputMode() { return outputMode; }
+    public void setOutputMode(OutputMode outputMode) { this.outputMode = outputMode; }
+
+    public int getMaxOpenFiles() { return maxOpenFiles; }
+    public void setMaxOpenFiles(int maxOpenFiles) { this.maxOpenFiles = maxOpenFiles; }
+
+    public long getMaxBytesInFlight() { return maxBytesInFlight; }
+    public void setMaxBytesInFlight(long maxBytesInFlight) { this.maxBytesInFlight = maxBytesInFlight; }
+
+    public int getReadThreads() { return readThreads; }
+    public void setReadThreads(int readThreads) { this.readThreads = readThreads; }
+
+    public int getMatchThreads() { return matchThreads; }
+    public void setMatchThreads(int matchThreads) { this.matchThreads = matchThreads; }
+
+    public int getWriteThreads() { return writeThreads; }
+    public void setWriteThreads(int writeThreads) { this.writeThreads = writeThreads; }
+
+    public int getStageQueueCapacity() { return stageQueueCapacity; }
+    public void setStageQueueCapacity(int stageQueueCapacity) { this.stageQueueCapacity = stageQueueCapacity; }
+
+    public long getChunkThreshold() { return chunkThreshold; }
+    public void setChunkThreshold(long chunkThreshold) { this.chunkThreshold = chunkThreshold; }
+
+    public long getChunkSize() { return chunkSize; }
+    public void setChunkSize(long chunkSize) { this.chunkSize = chunkSize; }
+
+    public boolean isIncremental() { return incremental; }
+    public void setIncremental(boolean incremental) { this.incremental = incremental; }
+
+    public boolean isDeduplicate() { return deduplicate; }
+    public void setDeduplicate(boolean deduplicate) { this.deduplicate = deduplicate; }
+
+    public boolean isDebugLog() { return debugLog; }
+    public void setDebugLog(boolean debugLog) { this.debugLog = debugLog; }
+
+    public boolean isJmxMonitor() { return jmxMonitor; }
+    public void setJmxMonitor(boolean jmxMonitor) { this.jmxMonitor = jmxMonitor; }
+
+    public boolean isWatch() { return watch; }
+    public void setWatch(boolean watch) { this.watch = watch; }
+
+    public int getTopWords() { return topWords; }
+    public void setTopWords(int topWords) { this.topWords = topWords; }
+
+    public Set<String> getIncludeExtensions() { return includeExtensions; }
+    public void setIncludeExtensions(Set<String> includeExtensions) { this.includeExtensions = includeExtensions; }
+
+    public Set<String> getExcludeExtensions() { return excludeExtensions; }
+    public void setExcludeExtensions(Set<String> excludeExtensions) { this.excludeExtensions = excludeExtensions; }
+
+    public List<String> getIncludeGlobs() { return includeGlobs; }
+    public void setIncludeGlobs(List<String> includeGlobs) { this.includeGlobs = includeGlobs; }
+
+    public List<String> getExcludeGlobs() { return excludeGlobs; }
+    public void setExcludeGlobs(List<String> excludeGlobs) { this.excludeGlobs = excludeGlobs; }
+
+    public long getMinFileSize() { return minFileSize; }
+    public void setMinFileSize(long minFileSize) { this.minFileSize = minFileSize; }
+
+    public long getMaxFileSize() { return maxFileSize; }
+    public void setMaxFileSize(long maxFileSize) { this.maxFileSize = maxFileSize; }
+
+    public boolean isDetectBinary() { return detectBinary; }
+    public void setDetectBinary(boolean detectBinary) { this.detectBinary = detectBinary; }
+
+    public boolean isUseIgnoreFiles() { return useIgnoreFiles; }
+    public void setUseIgnoreFiles(boolean useIgnoreFiles) { this.useIgnoreFiles = useIgnoreFiles; }
+
+    public boolean isScanArchives() { return scanArchives; }
+    public void setScanArchives(boolean scanArchives) { this.scanArchives = scanArchives; }
+
+    public int getMaxArchiveDepth() { return maxArchiveDepth; }
+    public void setMaxArchiveDepth(int maxArchiveDepth) { this.maxArchiveDepth = maxArchiveDepth; }
+}
@@ -0,0 +1,493 @@
+package com.example;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs scans as jobs of one long-lived process, for many small on-demand
+ * scans: the JVM and the code it has compiled, the worker pools
+ * ({@link ScanWorkers#shared()}) and the compiled dictionaries stay warm
+ * between jobs instead of being set up again for every scan. Jobs come in
+ * over HTTP, on the loopback interface only.
+ *
+ * Listening on loopback does not keep web pages out: any page the user opens
+ * can post to 127.0.0.1. So every request must carry the secret the service
+ * makes at start ({@code Authorization: Bearer <token>}), which only the
+ * user can read from the token file (owner read/write only). Requests with
+ * an {@code Origin} header (browsers add it to cross-site posts) or a
+ * {@code Host} other than a loopback name (DNS rebinding) are refused.
+ *
+ * <ul>
+ * <li>{@code POST /jobs}: the body is the ScanCommand arguments, one per
+ * line (directory, forbidden words file, output directory, options). The
+ * response streams the job as JSON Lines until it ends: a {@code job} record
+ * with its id, then {@code progress}, {@code message}, {@code file},
+ * {@code removed} and {@code error} records, and last an {@code end}
+ * record. Closing the response cancels the job.</li>
+ * <li>{@code GET /jobs}: the jobs running now, one record each.</li>
+ * <li>{@code POST /jobs/<id>/pause}, {@code .../resume}, {@code .../cancel}.</li>
+ * </ul>
+ *
+ * Usage: {@code java -cp forbiddenword_finder.jar com.example.ScanService
+ * [--port n] [--token-file path]}, e.g. {@code curl -N -H "Authorization:
+ * Bearer $(cat ~/.forbiddenword_service.token)" --data-binary @job.txt
+ * http://127.0.0.1:7878/jobs}.
+ */
+public final class ScanService {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: ScanService [--port n] [--token-file path]",
+            "  --port n            default 7878, 0 picks a free port; loopback only",
+            "  --token-file path   where the secret of this run is written (default ~/.forbiddenword_service.token)");
+
+    private static final int DEFAULT_PORT = 7878;
+    // Compiled dictionaries kept between jobs; the least recently used goes first
+    private static final int MAX_DICTIONARIES = 8;
+    // How long stopping the service waits for cancelled jobs to finish their reports
+    private static final long STOP_WAIT_SECONDS = 10;
+    // Flushes of output a job may have queued for its client; then rows wait and progress is dropped
+    private static final int OUTPUT_CAPACITY = 256;
+    private static final String TOKEN_FILE = ".forbiddenword_service.token";
+    // Host names a request for this service may carry; anything else came through another name (DNS rebinding)
+    private static final Set<String> LOOPBACK_HOSTS = Set.of("127.0.0.1", "localhost", "[::1]");
+
+    private final HttpServer server;
+    private final String token = newToken(); // Made for this run; every request must bring it
+    private final Path tokenFile;
+    private final ExecutorService requestThreads = Executors.newCachedThreadPool();
+    // The thread a job's scan runs on; its output goes to the request thread through the job's queue
+    private final ExecutorService jobThreads = Executors.newCachedThreadPool();
+    private final ScanWorkers workers = ScanWorkers.shared();
+    private final AtomicInteger nextJobId = new AtomicInteger(1);
+    private final ConcurrentHashMap<Integer, Job> jobs = new ConcurrentHashMap<>();
+
+    /** A dictionary file as it was when it was compiled; once the file changes, it is a new key. */
+    private record Dictionary(Path file, long modified, long size) {
+    }
+
+    private final Map<Dictionary, WordMatcher> dictionaries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Dictionary, WordMatcher> eldest) {
+            return size() > MAX_DICTIONARIES;
+        }
+    };
+
+    private ScanService(int port, Path tokenFile) throws IOException {
+        this.tokenFile = tokenFile;
+        writeToken(tokenFile, token);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/jobs", this::handle);
+        server.setExecutor(requestThreads);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        Path tokenFile = Paths.get(System.getProperty("user.home"), TOKEN_FILE);
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if (i + 1 == args.length)
+                    throw new IllegalArgumentException("Missing value: " + args[i]);
+                switch (args[i]) {
+                    case "--port" -> port = Integer.parseInt(args[++i]);
+                    case "--token-file" -> tokenFile = Paths.get(args[++i]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        ScanService service = new ScanService(port, tokenFile);
+        Runtime.getRuntime().addShutdownHook(new Thread(service::stop, "service-stopper"));
+        service.server.start();
+        InetSocketAddress address = service.server.getAddress();
+        System.err.println("Listening on http://" + address.getHostString() + ":" + address.getPort() + "/jobs");
+        System.err.println("Token in " + tokenFile.toAbsolutePath() + " (send it as Authorization: Bearer <token>)");
+    }
+
+    /** 32 random bytes, hex encoded. */
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        return HexFormat.of().formatHex(bytes);
+    }
+
+    /** Writes the token to a file only its owner can read; created that way, never readable in between. */
+    private static void writeToken(Path file, String token) throws IOException {
+        Files.deleteIfExists(file);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(file, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            // No POSIX permissions (Windows): the file sits in the user's own profile
+            Files.createFile(file);
+        }
+        Files.writeString(file, token, StandardCharsets.US_ASCII);
+    }
+
+    /** Cancels the running jobs, lets them finish their reports, then stops. */
+    private void stop() {
+        jobs.values().forEach(job -> job.scan.cancel());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STOP_WAIT_SECONDS);
+        try {
+            for (Job job : jobs.values()) {
+                job.finished.await(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server.stop(0);
+        jobThreads.shutdownNow();
+        requestThreads.shutdownNow();
+        workers.close();
+        try {
+            Files.deleteIfExists(tokenFile); // The token dies with this run
+        } catch (IOException e) {
+            System.err.println("Could not delete " + tokenFile + ": " + e.getMessage());
+        }
+    }
+
+    // --- Requests ---
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String refused = refusal(exchange);
+            if (refused != null) {
+                exchange.getRequestBody().close();
+                reply(exchange, 403, error(refused));
+                return;
+            }
+
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().split("/"); // "", "jobs", id, action
+            if (path.length == 2 && method.equals("POST")) {
+                runJob(exchange);
+            } else if (path.length == 2 && method.equals("GET")) {
+                StringBuilder list = new StringBuilder();
+                jobs.values().forEach(job -> list.append(job.describe()).append(System.lineSeparator()));
+                reply(exchange, 200, list.toString());
+            } else if (path.length == 4 && method.equals("POST")) {
+                control(exchange, path[2], path[3]);
+            } else {
+                reply(exchange, 404, error("Not found: " + method + " " + exchange.getRequestURI().getPath()));
+            }
+        }
+    }
+
+    /** Why a request is refused (not from a local client of this user), or null to serve it. */
+    private String refusal(HttpExchange exchange) {
+        Headers headers = exchange.getRequestHeaders();
+        if (headers.containsKey("Origin"))
+            return "Requests from web pages are not accepted";
+        String host = headers.getFirst("Host");
+        if (host == null || !LOOPBACK_HOSTS.contains(host.replaceFirst(":\\d+$", "").toLowerCase(Locale.ROOT)))
+            return "Not a loopback host: " + host;
+        String authorization = headers.getFirst("Authorization");
+        byte[] expected = ("Bearer " + token).getBytes(StandardCharsets.US_ASCII);
+        if (authorization == null
+                || !MessageDigest.isEqual(expected, authorization.strip().getBytes(StandardCharsets.US_ASCII)))
+            return "Missing or wrong token (see the token file of the service)";
+        return null;
+    }
+
+    /** Pauses, resumes or cancels a running job. */
+    private void control(HttpExchange exchange, String id, String action) throws IOException {
+        Job job;
+        try {
+            job = jobs.get(Integer.parseInt(id));
+        } catch (NumberFormatException e) {
+            job = null;
+        }
+        if (job == null) {
+            reply(exchange, 404, error("No running job " + id));
+            return;
+        }
+        switch (action) {
+            case "pause" -> {
+                job.scan.pause();
+                job.state = "paused";
+            }
+            case "resume" -> {
+                job.scan.resume();
+                job.state = "running";
+            }
+            case "cancel" -> {
+                job.scan.cancel();
+                job.state = "cancelling";
+            }
+            default -> {
+                reply(exchange, 404, error("Unknown action: " + action));
+                return;
+            }
+        }
+        reply(exchange, 200, job.describe() + System.lineSeparator());
+    }
+
+    /** Starts a job and streams its output as the response, until the job ends or the client goes. */
+    private void runJob(HttpExchange exchange) throws IOException {
+        // 1. The arguments, one per line, as ScanCommand takes them
+        String[] args;
+        try (InputStream in = exchange.getRequestBody()) {
+            args = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines()
+                    .filter(line -> !line.isBlank())
+                    .toArray(String[]::new);
+        }
+        ScanOptions options;
+        WordMatcher matcher;
+        try {
+            options = ScanCommand.parse(args, true).getOptions();
+            matcher = dictionary(Paths.get(args[1]));
+        } catch (IllegalArgumentException | IOException e) {
+            reply(exchange, 400, error(e.getMessage()));
+            return;
+        }
+
+        // 2. The scan runs on a job thread; cancel() interrupts that thread, never the one writing the response
+        Job job = new Job(nextJobId.getAndIncrement(), Paths.get(args[0]));
+        job.scan = new ForbiddenFinderScan(job.directory, matcher, Paths.get(args[2]), options, workers, job);
+        job.setResults(job.scan.getResults());
+        job.printLine(job.describe());
+        jobs.put(job.id, job);
+        jobThreads.execute(job::run);
+
+        // 3. Stream until the end record; the length of 0 makes the response chunked
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (Writer out = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+            for (String text = job.output.take(); text != Job.END; text = job.output.take()) {
+                out.write(text);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // The client went away: nobody is left to want the results
+            job.output.close();
+            job.scan.cancel();
+        } catch (InterruptedException e) {
+            job.output.close();
+            job.scan.cancel();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** The compiled dictionary of a words file, compiled again only after the file has changed. */
+    private WordMatcher dictionary(Path file) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        Dictionary key = new Dictionary(file.toAbsolutePath().normalize(), attrs.lastModifiedTime().toMillis(),
+                attrs.size());
+        synchronized (dictionaries) {
+            WordMatcher matcher = dictionaries.get(key);
+            if (matcher == null) {
+                matcher = new WordMatcher(new HashSet<>(Files.readAllLines(file)));
+                dictionaries.keySet().removeIf(old -> old.file().equals(key.file())); // Older versions of the file
+                dictionaries.put(key, matcher);
+            }
+            return matcher;
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        if (bytes.length > 0) {
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"type\":\"error\",\"message\":" + ReportWriter.jsonString(String.valueOf(message)) + "}"
+                + System.lineSeparator();
+    }
+
+    // --- Jobs ---
+
+    /**
+     * One scan: the listener turns what it reports into JSON Lines records and
+     * queues them for the request thread, so a slow client never holds up the
+     * scan threads. The queue is bounded: once a client falls behind, progress
+     * and status records are dropped (the next frame brings fresher ones) and
+     * rows wait on the frame thread, while the workers go on filling the
+     * result store.
+     */
+    private final class Job extends ResultPrinter {
+        // Marks the end of the output; compared by identity
+        static final String END = new String("end");
+
+        final int id;
+        final Path directory;
+        final JobOutput output;
+        final CountDownLatch finished = new CountDownLatch(1);
+        ForbiddenFinderScan scan;
+        volatile String state = "running";
+        private long lastDone = -1;
+        private volatile boolean messageDropped = false; // the latest status line did not fit in the queue
+
+        Job(int id, Path directory) {
+            this(id, directory, new JobOutput());
+        }
+
+        private Job(int id, Path directory, JobOutput output) {
+            super(new QueueWriter(output), true);
+            this.id = id;
+            this.directory = directory;
+            this.output = output;
+        }
+
+        void run() {
+            String status;
+            try {
+                boolean found = scan.run();
+                status = scan.isCancelled() ? "cancelled" : found ? "complete" : "empty";
+            } catch (Exception e) {
+                message("Scan failed: " + e);
+                status = "failed";
+            } finally {
+                jobs.remove(id);
+            }
+            Thread.interrupted(); // A cancel interrupts this thread; the end still has to reach the client
+            try {
+                flushRows(scan.getResults().size());
+                if (messageDropped) {
+                    printLine(messageRecord(getLastMessage())); // How the scan ended is never dropped
+                }
+                printLine(String.format(Locale.ROOT, "{\"type\":\"end\",\"id\":%d,\"status\":%s,\"files\":%d}",
+                        id, ReportWriter.jsonString(status), scan.getResults().liveCount()));
+                output.put(END);
+            } catch (IOException | UncheckedIOException e) {
+                output.close(); // Interrupted while waiting for room: nobody reads this job any more
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        @Override
+        public void message(String message) {
+            if (message.equals(getLastMessage()))
+                return; // The same status again, frame after frame
+            super.message(message);
+            messageDropped = !output.offer(messageRecord(message) + System.lineSeparator());
+        }
+
+        @Override
+        public void progress(long done, long total) {
+            if (done == lastDone)
+                return;
+            lastDone = done;
+            output.offer(String.format(Locale.ROOT, "{\"type\":\"progress\",\"done\":%d,\"total\":%d}", done, total)
+                    + System.lineSeparator());
+        }
+
+        private static String messageRecord(String message) {
+            return "{\"type\":\"message\",\"text\":" + ReportWriter.jsonString(message) + "}";
+        }
+
+        @Override
+        public void fileFailed(String file, String reason) {
+            printLine("{\"type\":\"error\",\"path\":" + ReportWriter.jsonString(file)
+                    + ",\"message\":" + ReportWriter.jsonString(String.valueOf(reason)) + "}");
+        }
+
+        String describe() {
+            return String.format(Locale.ROOT, "{\"type\":\"job\",\"id\":%d,\"state\":%s,\"directory\":%s,\"files\":%d}",
+                    id, ReportWriter.jsonString(state),
+                    ReportWriter.jsonString(directory.toAbsolutePath().toString()),
+                    scan.getResults().liveCount());
+        }
+    }
+
+    /** What a job sends to its client: at most OUTPUT_CAPACITY pieces, taken by the request thread. */
+    private static final class JobOutput {
+        private final BlockingQueue<String> queue = new ArrayBlockingQueue<>(OUTPUT_CAPACITY);
+        private volatile boolean closed = false; // The client went away
+
+        /** Queues output that must not be lost (rows, errors, the end), waiting for room; dropped once closed. */
+        void put(String text) throws InterruptedIOException {
+            try {
+                while (!closed && !queue.offer(text, 100, TimeUnit.MILLISECONDS)) {
+                    // The client is slow: wait for it, but not after it has gone
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for the client");
+            }
+        }
+
+        /** Queues output only if there is room; returns false if it was dropped. */
+        boolean offer(String text) {
+            return !closed && queue.offer(text);
+        }
+
+        String take() throws InterruptedException {
+            return queue.take();
+        }
+
+        /** Nothing more is sent: waiting producers give up and what is queued is freed. */
+        void close() {
+            closed = true;
+            queue.clear();
+        }
+    }
+
+    /** Collects what a job prints and queues it at every flush (ResultPrinter flushes after each batch). */
+    private static final class QueueWriter extends Writer {
+        private final JobOutput output;
+        private final StringBuilder pending = new StringBuilder();
+
+        QueueWriter(JobOutput output) {
+            this.output = output;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            pending.append(chars, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (pending.length() > 0) {
+                String text = pending.toString();
+                pending.setLength(0);
+                output.put(text);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
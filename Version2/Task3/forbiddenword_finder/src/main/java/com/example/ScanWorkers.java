@@ -0,0 +1,105 @@
+package com.example;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * The thread pools a scan runs its work on.
+ *
+ * A scan of its own (the app, the command line) gets fresh pools from
+ * {@link #perScan()} and shuts each down when it is done with it. The
+ * {@link ScanService} keeps one {@link #shared()} set for all its jobs, so
+ * the threads stay up (and their code compiled) between jobs; a scan never
+ * shuts those down, it waits for its own tasks on them instead.
+ */
+final class ScanWorkers implements AutoCloseable {
+
+    private final boolean shared;
+
+    // Shared pools, created on first use (always null for a scan of its own)
+    private ExecutorService filePool;
+    private ForkJoinPool forkJoinPool;
+    private ForkJoinPool chunkPool;
+    private ExecutorService stagePool;
+
+    private ScanWorkers(boolean shared) {
+        this.shared = shared;
+    }
+
+    /** New pools for every request; release() shuts them down. */
+    static ScanWorkers perScan() {
+        return new ScanWorkers(false);
+    }
+
+    /** One set of pools for many scans, running at once or one after another; close() shuts them down. */
+    static ScanWorkers shared() {
+        return new ScanWorkers(true);
+    }
+
+    /** One task per file (fixed pool engine, watch batches); the first caller decides the size of a shared pool. */
+    synchronized ExecutorService filePool(int threads) {
+        if (!shared)
+            return Executors.newFixedThreadPool(threads);
+        if (filePool == null) {
+            filePool = Executors.newFixedThreadPool(threads);
+        }
+        return filePool;
+    }
+
+    /** Directory and file batch tasks of the fork/join engine. */
+    synchronized ForkJoinPool forkJoinPool() {
+        if (!shared)
+            return new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        if (forkJoinPool == null) {
+            forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return forkJoinPool;
+    }
+
+    /** Chunks of very large files and entries of archives, whatever the engine. */
+    synchronized ForkJoinPool chunkPool() {
+        if (!shared)
+            return new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        if (chunkPool == null) {
+            chunkPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return chunkPool;
+    }
+
+    /**
+     * Threads that each run one pipeline stage loop until the scan ends. A
+     * shared pool grows to as many loops as the jobs running at once need.
+     */
+    synchronized ExecutorService stagePool(int threads) {
+        if (!shared)
+            return Executors.newFixedThreadPool(threads);
+        if (stagePool == null) {
+            stagePool = Executors.newCachedThreadPool();
+        }
+        return stagePool;
+    }
+
+    /**
+     * Hands a pool back once the scan is done with it. Returns true if it was
+     * shut down (its tasks are interrupted): any pool but a shared one, such
+     * as the virtual thread executor a scan makes itself. False for a shared
+     * pool, where the scan has to wait for its own tasks to see the cancel
+     * flag and end.
+     */
+    synchronized boolean release(ExecutorService pool) {
+        if (pool == filePool || pool == forkJoinPool || pool == chunkPool || pool == stagePool)
+            return false;
+        pool.shutdownNow();
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        for (ExecutorService pool : new ExecutorService[] { filePool, forkJoinPool, chunkPool, stagePool }) {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Coalesces what the workers report and hands it to the UI at a fixed frame
+ * rate. New rows reach the table as one change per frame (the store rows
+ * added since the last one), and progress (files, bytes, throughput and ETA)
+ * is one updateProgress / updateMessage per frame, however many files finish
+ * in between. Workers only touch the store, a concurrent queue and adders, so
+ * 100k files a second cost the FX thread ten updates. The sinks are called on
+ * the frame thread; the FX task hands them on to the FX thread, the command
+ * line prints from there.
+ */
+final class UiUpdateChannel {
+
+    static final long FRAME_MILLIS = 100; // 10 frames per second
+
+    /** Receives the progress of a frame (Task.updateProgress). */
+    interface ProgressSink {
+        void update(long done, long total);
+    }
+
+    /** Receives the rows of a frame: the store's size now, and the rows removed since the last frame. */
+    interface RowSink {
+        void update(int storeSize, Set<Integer> removed);
+    }
+
+    private final ResultStore store;
+    private final RowSink rows;
+    private final ProgressSink progress;
+    private final Consumer<String> message;
+    private final boolean debugLog;
+
+    private final ConcurrentLinkedQueue<Integer> removedRows = new ConcurrentLinkedQueue<>();
+    private int publishedRows = 0; // frame thread only
+    private final LongAdder filesDone = new LongAdder();
+    private final LongAdder bytesDone = new LongAdder();
+    private volatile long filesDiscovered;
+    private volatile long bytesDiscovered;
+    private volatile boolean walkComplete;
+    private volatile String lastFile = "N/A";
+    private volatile String detail;
+    private volatile boolean messagesHeld;
+
+    private long startNanos;
+    private ScheduledExecutorService ticker;
+
+    UiUpdateChannel(ResultStore store, RowSink rows, ProgressSink progress, Consumer<String> message,
+            boolean debugLog) {
+        this.store = store;
+        this.rows = rows;
+        this.progress = progress;
+        this.message = message;
+        this.debugLog = debugLog;
+    }
+
+    void start() {
+        startNanos = System.nanoTime();
+        ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ui-updates");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::flush, FRAME_MILLIS, FRAME_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the frames and flushes what is left. Progress messages stop here,
+     * so the caller's final message is not overwritten; closing twice is harmless.
+     */
+    void close() {
+        if (ticker == null)
+            return;
+
+        ticker.shutdownNow();
+        try {
+            ticker.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            // Cancelled: still flush below, the interrupt stays set
+            Thread.currentThread().interrupt();
+        }
+        ticker = null;
+        flush();
+    }
+
+    // --- Called from any thread ---
+
+    /** Takes a store row off the table (it has already been removed from the store). */
+    void removeRow(int row) {
+        removedRows.add(row);
+    }
+
+    void fileDone(String fileName, long bytes) {
+        filesDone.increment();
+        bytesDone.add(bytes);
+        lastFile = fileName;
+    }
+
+    /** Totals found by the walk so far. */
+    void discovered(long files, long bytes, boolean complete) {
+        filesDiscovered = files;
+        bytesDiscovered = bytes;
+        walkComplete = complete;
+    }
+
+    /** Engine-specific text appended to the progress message (null for none). */
+    void setDetail(String detail) {
+        this.detail = detail;
+    }
+
+    /** While held, progress is not published (e.g. so "Paused..." stays on screen); rows still are. */
+    void holdMessages(boolean held) {
+        this.messagesHeld = held;
+    }
+
+    long getFilesDone() {
+        return filesDone.sum();
+    }
+
+    long getBytesDone() {
+        return bytesDone.sum();
+    }
+
+    // --- Frame ---
+
+    private void flush() {
+        try {
+            flushRows();
+            if (!messagesHeld) {
+                flushProgress();
+            }
+        } catch (RuntimeException e) {
+            // A failed frame must not end the ticker
+            System.err.println("UI update failed: " + e);
+        }
+    }
+
+    private synchronized void flushRows() {
+        int storeSize = store.size();
+        Set<Integer> removed = new HashSet<>();
+        Integer row;
+        while ((row = removedRows.poll()) != null) {
+            removed.add(row);
+        }
+        if (storeSize == publishedRows && removed.isEmpty())
+            return;
+
+        if (debugLog && storeSize > publishedRows) {
+            // One write per frame, off the worker threads
+            StringBuilder log = new StringBuilder();
+            for (int added = publishedRows; added < storeSize; added++) {
+                log.append("Found: ").append(store.describe(added)).append(System.lineSeparator());
+            }
+            System.out.print(log);
+        }
+        publishedRows = storeSize;
+
+        rows.update(storeSize, removed);
+    }
+
+    private void flushProgress() {
+        long files = filesDone.sum();
+        long bytes = bytesDone.sum();
+        long totalFiles = Math.max(files, filesDiscovered);
+        progress.update(files, totalFiles);
+
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        double bytesPerSecond = seconds > 0 ? bytes / seconds : 0;
+        String eta = "--";
+        if (walkComplete && bytesPerSecond > 0) {
+            long remaining = (long) (Math.max(0, bytesDiscovered - bytes) / bytesPerSecond);
+            eta = String.format("%d:%02d", remaining / 60, remaining % 60);
+        }
+
+        String text = String.format("Processed: %s (File %d of %d%s) | %s of %s, %s/s, ETA %s",
+                lastFile, files, totalFiles, walkComplete ? "" : " discovered so far",
+                ReportEntry.formatSize(bytes), ReportEntry.formatSize(bytesDiscovered),
+                ReportEntry.formatSize((long) bytesPerSecond), eta);
+        String extra = detail;
+        message.accept(extra == null ? text : text + " | " + extra);
+    }
+}
@@ -0,0 +1,426 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Aho-Corasick matcher for the whole forbidden-word dictionary.
+ *
+ * The automaton is built once per scan and finds every word in a single
+ * left-to-right pass, so the cost of a line depends on its length and not on
+ * the number of forbidden words. Matching follows the old
+ * {@code "\\b" + word + "\\b"} / {@code CASE_INSENSITIVE} regex: ASCII letters
+ * are case-folded and a match must sit on word boundaries. When matches
+ * overlap, the longer match starting at the same place (or earlier) wins, as
+ * long as it does not reach back into a match that is already final.
+ */
+public final class WordMatcher {
+
+    public static final String MASK = "*******";
+
+    /** Receives the final, non-overlapping matches of a byte scan in input order. */
+    public interface MatchSink {
+        void onMatch(int start, int end, int wordId) throws IOException;
+    }
+
+    private final String[] words; // word id -> word as given in the dictionary
+    private final int[] byteLengths; // word id -> length of its UTF-8 encoding
+    private final int maxByteLength;
+    private final Automaton charAutomaton;
+    private final Automaton byteAutomaton; // same words as UTF-8 bytes
+
+    public WordMatcher(Collection<String> forbiddenWords) {
+        List<String> accepted = new ArrayList<>();
+        for (String word : forbiddenWords) {
+            // An empty word would "match" on every word boundary
+            if (word != null && !word.isEmpty()) {
+                accepted.add(word);
+            }
+        }
+        this.words = accepted.toArray(new String[0]);
+
+        this.charAutomaton = new Automaton(Character.MAX_VALUE + 1);
+        for (int id = 0; id < words.length; id++) {
+            String word = words[id];
+            int[] symbols = new int[word.length()];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = fold(word.charAt(i));
+            }
+            charAutomaton.add(symbols, id);
+        }
+        charAutomaton.build();
+
+        // ASCII folding leaves multi-byte UTF-8 sequences untouched, so folding
+        // the encoded bytes gives the same result as folding the characters
+        this.byteAutomaton = new Automaton(256);
+        this.byteLengths = new int[words.length];
+        int longest = 0;
+        for (int id = 0; id < words.length; id++) {
+            byte[] encoded = words[id].getBytes(StandardCharsets.UTF_8);
+            byteLengths[id] = encoded.length;
+            longest = Math.max(longest, encoded.length);
+            int[] symbols = new int[encoded.length];
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = fold(encoded[i] & 0xff);
+            }
+            byteAutomaton.add(symbols, id);
+        }
+        byteAutomaton.build();
+        this.maxByteLength = longest;
+    }
+
+    /** Number of distinct word ids; size of the {@code hits} arrays. */
+    public int size() {
+        return words.length;
+    }
+
+    public boolean isEmpty() {
+        return words.length == 0;
+    }
+
+    public String word(int id) {
+        return words[id];
+    }
+
+    /** Bytes a match of this word covers in UTF-8 input. */
+    public int byteLength(int id) {
+        return byteLengths[id];
+    }
+
+    /** Bytes the longest word covers in UTF-8 input; no match is longer. */
+    public int maxByteLength() {
+        return maxByteLength;
+    }
+
+    /**
+     * Appends {@code line} to {@code out} with every forbidden word replaced by
+     * {@link #MASK}, adds one to {@code hits[id]} for each match and returns the
+     * number of matches in the line.
+     */
+    public int maskLine(CharSequence line, StringBuilder out, long[] hits) {
+        int length = line.length();
+        if (words.length == 0) {
+            out.append(line);
+            return 0;
+        }
+
+        Automaton automaton = charAutomaton;
+        int state = 0;
+        int copied = 0; // everything before this index is already in out
+        int matches = 0;
+        int pendingStart = -1, pendingEnd = -1, pendingWord = -1;
+
+        for (int i = 0; i < length; i++) {
+            state = automaton.next(state, fold(line.charAt(i)));
+
+            int node = automaton.output[state] >= 0 ? state : automaton.dictLink[state];
+            while (node > 0) {
+                int end = i + 1;
+                int start = end - automaton.depth[node];
+                if (isBoundary(line, start) && isBoundary(line, end)) {
+                    if (pendingWord < 0) {
+                        pendingStart = start;
+                        pendingEnd = end;
+                        pendingWord = automaton.output[node];
+                    } else if (start >= pendingEnd) {
+                        // No overlap: the pending match is final
+                        out.append(line, copied, pendingStart).append(MASK);
+                        copied = pendingEnd;
+                        hits[pendingWord]++;
+                        matches++;
+                        pendingStart = start;
+                        pendingEnd = end;
+                        pendingWord = automaton.output[node];
+                    } else if (start <= pendingStart && start >= copied) {
+                        // This match covers the pending one; text already copied
+                        // out (up to the end of the last final match) stays as is
+                        pendingStart = start;
+                        pendingEnd = end;
+                        pendingWord = automaton.output[node];
+                    }
+                }
+                node = automaton.dictLink[node];
+            }
+        }
+
+        if (pendingWord >= 0) {
+            out.append(line, copied, pendingStart).append(MASK);
+            copied = pendingEnd;
+            hits[pendingWord]++;
+            matches++;
+        }
+        out.append(line, copied, length);
+        return matches;
+    }
+
+    /**
+     * Byte-level variant of {@link #maskLine} for ASCII / UTF-8 input. Scans
+     * {@code buffer[from, to)} without decoding it, treating the bytes just
+     * outside the range as non-word characters. Matches are counted into
+     * {@code hits} (if not null) and handed to {@code sink} (if not null) with
+     * absolute buffer indexes. Returns the number of matches.
+     */
+    public int scanBytes(ByteBuffer buffer, int from, int to, long[] hits, MatchSink sink) throws IOException {
+        return scanBytes(buffer, from, to, from, to, hits, sink);
+    }
+
+    /**
+     * Same as {@link #scanBytes(ByteBuffer, int, int, long[], MatchSink)}, but
+     * only matches starting in {@code [emitFrom, emitTo)} are counted and handed
+     * out. Words starting before {@code emitFrom} are skipped (that text was
+     * already scanned), and the bytes from {@code emitTo} on are only context,
+     * so a window can be cut anywhere as long as it reaches
+     * {@link #maxByteLength()} + 1 bytes past {@code emitTo}.
+     */
+    public int scanBytes(ByteBuffer buffer, int from, int to, int emitFrom, int emitTo, long[] hits,
+            MatchSink sink) throws IOException {
+        if (words.length == 0) {
+            return 0;
+        }
+
+        Automaton automaton = byteAutomaton;
+        int state = 0;
+        int matches = 0;
+        int finalEnd = emitFrom; // end of the last match handed out; nothing may start before it
+        int pendingStart = -1, pendingEnd = -1, pendingWord = -1;
+
+        for (int i = from; i < to; i++) {
+            state = automaton.next(state, fold(buffer.get(i) & 0xff));
+
+            int node = automaton.output[state] >= 0 ? state : automaton.dictLink[state];
+            while (node > 0) {
+                int end = i + 1;
+                int start = end - automaton.depth[node];
+                if (start >= finalEnd && isBoundary(buffer, from, to, start) && isBoundary(buffer, from, to, end)) {
+                    if (pendingWord < 0) {
+                        pendingStart = start;
+                        pendingEnd = end;
+                        pendingWord = automaton.output[node];
+                    } else if (start >= pendingEnd) {
+                        if (pendingStart < emitTo) {
+                            if (hits != null)
+                                hits[pendingWord]++;
+                            if (sink != null)
+                                sink.onMatch(pendingStart, pendingEnd, pendingWord);
+                            matches++;
+                        }
+                        finalEnd = pendingEnd;
+                        pendingStart = start;
+                        pendingEnd = end;
+                        pendingWord = automaton.output[node];
+                    } else if (start <= pendingStart) {
+                        pendingStart = start;
+                        pendingEnd = end;
+                        pendingWord = automaton.output[node];
+                    }
+                }
+                node = automaton.dictLink[node];
+            }
+        }
+
+        if (pendingWord >= 0 && pendingStart < emitTo) {
+            if (hits != null)
+                hits[pendingWord]++;
+            if (sink != null)
+                sink.onMatch(pendingStart, pendingEnd, pendingWord);
+            matches++;
+        }
+        return matches;
+    }
+
+    // --- Character helpers ---
+
+    /** ASCII-only case folding, same as Pattern.CASE_INSENSITIVE without UNICODE_CASE. */
+    static int fold(int c) {
+        return (c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c;
+    }
+
+    /** Word characters as seen by the regex {@code \b}: [A-Za-z0-9_]. */
+    static boolean isWordChar(int c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static boolean isBoundary(CharSequence line, int index) {
+        boolean before = index > 0 && isWordChar(line.charAt(index - 1));
+        boolean after = index < line.length() && isWordChar(line.charAt(index));
+        return before != after;
+    }
+
+    private static boolean isBoundary(ByteBuffer buffer, int from, int to, int index) {
+        boolean before = index > from && isWordChar(buffer.get(index - 1) & 0xff);
+        boolean after = index < to && isWordChar(buffer.get(index) & 0xff);
+        return before != after;
+    }
+
+    // --- Automaton ---
+
+    /**
+     * Trie with failure links over int symbols. Transitions live in one
+     * open-addressing table keyed by (state, symbol); the root has a direct
+     * lookup table because most input symbols fall back to it.
+     */
+    static final class Automaton {
+        private final int[] rootNext;
+
+        private long[] keys = new long[1024];
+        private int[] values = new int[1024];
+        private int transitionCount = 0;
+
+        private int nodeCount = 1; // node 0 is the root
+        private int[] parent = new int[256];
+        private int[] symbol = new int[256];
+        int[] depth = new int[256];
+        int[] output = new int[256]; // word id ending at this node, or -1
+        int[] fail;
+        int[] dictLink; // nearest node on the failure chain with an output, or 0
+
+        Automaton(int alphabetSize) {
+            rootNext = new int[alphabetSize];
+            Arrays.fill(keys, -1L);
+            output[0] = -1;
+        }
+
+        void add(int[] symbols, int wordId) {
+            int state = 0;
+            for (int s : symbols) {
+                int child = child(state, s);
+                if (child < 0) {
+                    child = newNode(state, s);
+                    putTransition(state, s, child);
+                }
+                state = child;
+            }
+            // First spelling wins, as the first regex used to replace the others
+            if (output[state] < 0) {
+                output[state] = wordId;
+            }
+        }
+
+        void build() {
+            fail = new int[nodeCount];
+            dictLink = new int[nodeCount];
+
+            // Counting sort by depth gives a breadth-first order
+            int maxDepth = 0;
+            for (int n = 0; n < nodeCount; n++) {
+                maxDepth = Math.max(maxDepth, depth[n]);
+            }
+            int[] start = new int[maxDepth + 2];
+            for (int n = 0; n < nodeCount; n++) {
+                start[depth[n] + 1]++;
+            }
+            for (int d = 1; d < start.length; d++) {
+                start[d] += start[d - 1];
+            }
+            int[] order = new int[nodeCount];
+            for (int n = 0; n < nodeCount; n++) {
+                order[start[depth[n]]++] = n;
+            }
+
+            for (int n : order) {
+                if (depth[n] <= 1) {
+                    continue; // root and its children fail to the root
+                }
+                int f = fail[parent[n]];
+                int s = symbol[n];
+                int target;
+                while ((target = child(f, s)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[n] = Math.max(target, 0);
+                dictLink[n] = output[fail[n]] >= 0 ? fail[n] : dictLink[fail[n]];
+            }
+
+            for (int s = 0; s < rootNext.length; s++) {
+                rootNext[s] = Math.max(child(0, s), 0);
+            }
+            // The build-only arrays are no longer needed
+            parent = null;
+            symbol = null;
+        }
+
+        int next(int state, int s) {
+            while (state != 0) {
+                int child = child(state, s);
+                if (child >= 0) {
+                    return child;
+                }
+                state = fail[state];
+            }
+            return rootNext[s];
+        }
+
+        private int newNode(int from, int s) {
+            if (nodeCount == depth.length) {
+                int size = nodeCount * 2;
+                parent = Arrays.copyOf(parent, size);
+                symbol = Arrays.copyOf(symbol, size);
+                depth = Arrays.copyOf(depth, size);
+                output = Arrays.copyOf(output, size);
+            }
+            int node = nodeCount++;
+            parent[node] = from;
+            symbol[node] = s;
+            depth[node] = depth[from] + 1;
+            output[node] = -1;
+            return node;
+        }
+
+        private int child(int state, int s) {
+            long key = ((long) state << 32) | (s & 0xffffffffL);
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+                long k = keys[slot];
+                if (k == key) {
+                    return values[slot];
+                }
+                if (k == -1L) {
+                    return -1;
+                }
+            }
+        }
+
+        private void putTransition(int state, int s, int child) {
+            if ((transitionCount + 1) * 2 > keys.length) {
+                rehash(keys.length * 2);
+            }
+            long key = ((long) state << 32) | (s & 0xffffffffL);
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != -1L) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = child;
+            transitionCount++;
+        }
+
+        private void rehash(int size) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[size];
+            values = new int[size];
+            Arrays.fill(keys, -1L);
+            int mask = size - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != -1L) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (keys[slot] != -1L) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        private static int hash(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Word statistics for the report: totals, and per word its matches by
+ * directory, by file extension and by file. Everything is summed from the
+ * {@link ResultStore}'s per-word row lists when asked for; during the scan a
+ * file's counts are only recorded with its row, so no counter is shared
+ * between workers. Removed rows (watch mode) do not count.
+ */
+final class WordStats {
+
+    /** The top entries of one word's breakdowns, most matches first. */
+    record Breakdown(String word, long total, List<Map.Entry<String, Long>> byDirectory,
+            List<Map.Entry<String, Long>> byExtension, List<Map.Entry<String, Long>> byFile) {
+    }
+
+    private final ResultStore store;
+    private final ResultStore.Columns columns;
+
+    /** Statistics of the rows the store has now. */
+    WordStats(ResultStore store) {
+        this.store = store;
+        this.columns = store.columns();
+    }
+
+    /** Total matches per word. */
+    Map<String, Long> totals() {
+        Map<String, Long> totals = new HashMap<>();
+        for (String word : store.words()) {
+            ResultStore.WordRows wordRows = store.wordRows(word);
+            long total = 0;
+            for (int i = 0; i < wordRows.rows().length; i++) {
+                if (counts(wordRows.rows()[i])) {
+                    total += wordRows.counts()[i];
+                }
+            }
+            if (total > 0) {
+                totals.put(word, total);
+            }
+        }
+        return totals;
+    }
+
+    /** Where one word was found: the {@code limit} biggest directories, extensions and files. */
+    Breakdown breakdown(String word, int limit) {
+        Map<String, Long> byDirectory = new HashMap<>();
+        Map<String, Long> byExtension = new HashMap<>();
+        Map<String, Long> byFile = new HashMap<>();
+        long total = 0;
+
+        ResultStore.WordRows wordRows = store.wordRows(word);
+        if (wordRows != null) {
+            for (int i = 0; i < wordRows.rows().length; i++) {
+                int row = wordRows.rows()[i];
+                if (!counts(row))
+                    continue;
+                long count = wordRows.counts()[i];
+                String directory = columns.directories().get(columns.directoryIds()[row]);
+                String fileName = columns.fileNames()[row];
+                byDirectory.merge(directory, count, Long::sum);
+                byExtension.merge(extensionLabel(fileName), count, Long::sum);
+                byFile.merge(directory + File.separator + fileName, count, Long::sum);
+                total += count;
+            }
+        }
+        return new Breakdown(word, total, top(byDirectory, limit), top(byExtension, limit), top(byFile, limit));
+    }
+
+    /** Rows added after the snapshot are left for the next report. */
+    private boolean counts(int row) {
+        return row < columns.size() && !columns.removed().get(row);
+    }
+
+    /** The extension as the report shows it: ".txt", or "(none)". */
+    static String extensionLabel(String fileName) {
+        String extension = FileClassifier.extensionOf(fileName);
+        return extension.isEmpty() ? "(none)" : "." + extension;
+    }
+
+    /**
+     * The k biggest entries, biggest first. A min-heap of at most k entries
+     * keeps the current top k, so this is O(n log k) and holds k entries, not
+     * a sorted copy of everything.
+     */
+    static List<Map.Entry<String, Long>> top(Map<String, Long> counts, int k) {
+        PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(Math.max(1, k),
+                Map.Entry.comparingByValue());
+        for (Map.Entry<String, Long> entry : counts.entrySet()) {
+            if (k <= 0)
+                break;
+            if (heap.size() < k) {
+                heap.add(entry);
+            } else if (entry.getValue() > heap.peek().getValue()) {
+                heap.poll();
+                heap.add(entry);
+            }
+        }
+        List<Map.Entry<String, Long>> top = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            top.add(heap.poll());
+        }
+        Collections.reverse(top);
+        return top;
+    }
+}
@@ -2,6 +2,9 @@ module com.example {
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.graphics;
+    requires jdk.jfr;
+    requires java.management;
+    requires jdk.httpserver;
 
     opens com.example to javafx.fxml;
     exports com.example;
@@ -0,0 +1,119 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ChunkedFileScannerTest {
+
+    private static final int MB = 1024 * 1024;
+
+    @TempDir
+    Path root;
+
+    private final ExecutorService pool = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void singleLineIsCutAnywhereAndMatchesAcrossTheCutAreFoundOnce() throws Exception {
+        StringBuilder text = filler(3 * MB, '\0');
+        put(text, MB - 3, "secret");
+        put(text, 2 * MB - 1, "top secret");
+
+        WordMatcher matcher = new WordMatcher(List.of("secret", "top secret"));
+        assertScansLikeOneLine(text.toString(), matcher, 3);
+    }
+
+    @Test
+    void crossingMatchMakesTheNextChunkResumeAfterIt() throws Exception {
+        // "ab cd" crosses the cut and wins over "cd ef", which starts inside it
+        StringBuilder text = filler(2 * MB, '\0');
+        put(text, MB - 3, "ab cd ef");
+
+        WordMatcher matcher = new WordMatcher(List.of("ab cd", "cd ef", "ef"));
+        assertScansLikeOneLine(text.toString(), matcher, 2);
+    }
+
+    @Test
+    void chunksAreCutAfterALineBreak() throws Exception {
+        StringBuilder text = filler(3 * MB, '\n');
+        put(text, MB - 3, "secret");
+
+        WordMatcher matcher = new WordMatcher(List.of("secret", "lorem"));
+        String content = text.toString();
+        try (FileChannel channel = FileChannel.open(write(content), StandardOpenOption.READ)) {
+            ChunkedFileScanner chunks = new ChunkedFileScanner(channel, matcher, MB, pool, () -> false);
+            assertEquals(3, chunks.chunkCount());
+        }
+        assertScansLikeOneLine(content, matcher, 3);
+    }
+
+    /** Count, masked copy and patch matches must equal a single maskLine over the whole text. */
+    private void assertScansLikeOneLine(String content, WordMatcher matcher, int chunkCount) throws Exception {
+        long[] expectedHits = new long[matcher.size()];
+        StringBuilder expected = new StringBuilder();
+        int expectedMatches = matcher.maskLine(content, expected, expectedHits);
+
+        Path source = write(content);
+        Path masked = root.resolve("masked.txt");
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(masked, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ChunkedFileScanner chunks = new ChunkedFileScanner(channel, matcher, MB, pool, () -> false);
+            assertEquals(chunkCount, chunks.chunkCount());
+
+            long[] hits = new long[matcher.size()];
+            assertEquals(expectedMatches, chunks.count(hits));
+            assertArrayEquals(expectedHits, hits);
+            chunks.writeMasked(out);
+
+            long[] patchHits = new long[matcher.size()];
+            PatchFile.MatchList matches = new PatchFile.MatchList();
+            assertEquals(expectedMatches, chunks.collectMatches(patchHits, matches));
+            assertArrayEquals(expectedHits, patchHits);
+            assertEquals(ContentHash.of(channel), chunks.contentHash());
+
+            long[] sequentialHits = new long[matcher.size()];
+            assertEquals(expectedMatches, MappedFileScanner.scan(channel, matcher, sequentialHits, null, () -> false));
+        }
+        assertEquals(expected.toString(), Files.readString(masked));
+    }
+
+    /** Random lowercase words of filler text; {@code lineBreak} every few hundred bytes unless it is '\0'. */
+    private static StringBuilder filler(int length, char lineBreak) {
+        Random random = new Random(3);
+        StringBuilder text = new StringBuilder(length);
+        while (text.length() < length) {
+            char separator = lineBreak != '\0' && random.nextInt(40) == 0 ? lineBreak : ' ';
+            text.append(random.nextBoolean() ? "lorem" : "ipsum").append(separator);
+        }
+        text.setLength(length);
+        return text;
+    }
+
+    /** Overwrites text at {@code at} with " word ", so the word stands on its own. */
+    private static void put(StringBuilder text, int at, String word) {
+        text.replace(at - 1, at + word.length() + 1, " " + word + " ");
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.write(root.resolve("in.txt"), content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
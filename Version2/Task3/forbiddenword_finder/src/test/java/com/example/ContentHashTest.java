@@ -0,0 +1,34 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class ContentHashTest {
+
+    @Test
+    void combinedPiecesHashLikeTheWhole() {
+        byte[] bytes = new byte[100_003];
+        new Random(42).nextBytes(bytes);
+        long whole = ContentHash.of(ByteBuffer.wrap(bytes));
+
+        for (int cut : new int[] { 0, 1, 4096, 65_536, 99_999, bytes.length }) {
+            long first = ContentHash.of(ByteBuffer.wrap(bytes, 0, cut));
+            long second = ContentHash.of(ByteBuffer.wrap(bytes, cut, bytes.length - cut));
+            assertEquals(whole, ContentHash.combine(first, second, bytes.length - cut), "cut at " + cut);
+        }
+    }
+
+    @Test
+    void accumulatorHashesLikeTheWhole() {
+        byte[] bytes = new byte[10_000];
+        new Random(7).nextBytes(bytes);
+        ContentHash.Accumulator hash = new ContentHash.Accumulator();
+        hash.update(ByteBuffer.wrap(bytes, 0, 3_000));
+        hash.update(ByteBuffer.wrap(bytes, 3_000, 7_000));
+        assertEquals(ContentHash.of(ByteBuffer.wrap(bytes)), hash.value());
+    }
+}
@@ -0,0 +1,41 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileClassifierTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void watchRescansAreClassifiedWithoutCountingSkips() throws Exception {
+        Path binary = Files.write(root.resolve("image.dat"), new byte[] { 0, 1, 2, 0, 0, 3, 0, 4 });
+        Path excluded = Files.writeString(root.resolve("app.log"), "text");
+        ScanOptions options = new ScanOptions();
+        options.setDetectBinary(true);
+        options.setExcludeExtensions(Set.of("log"));
+        FileClassifier classifier = new FileClassifier(root, options);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(classifier.isBinary(binary, Files.size(binary)));
+            assertFalse(classifier.accepts(excluded, Files.size(excluded)));
+        }
+        assertEquals(0, classifier.getSkippedFiles(FileClassifier.SkipReason.BINARY));
+        assertEquals(0, classifier.getSkippedFiles(FileClassifier.SkipReason.EXCLUDED));
+
+        // The first scan still counts them
+        assertTrue(classifier.skipBinary(binary, Files.size(binary)));
+        assertFalse(classifier.accept(excluded, Files.size(excluded)));
+        assertEquals(1, classifier.getSkippedFiles(FileClassifier.SkipReason.BINARY));
+        assertEquals(1, classifier.getSkippedFiles(FileClassifier.SkipReason.EXCLUDED));
+    }
+}
@@ -0,0 +1,231 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ForbiddenFinderScanTest {
+
+    @TempDir
+    Path root;
+
+    /** Collects what a scan reports; the rows are read from the store afterwards. */
+    private static final class Recorder implements ForbiddenFinderScan.Listener {
+        final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void message(String message) {
+        }
+
+        @Override
+        public void progress(long done, long total) {
+        }
+
+        @Override
+        public void rows(int storeSize, Set<Integer> removed) {
+        }
+
+        @Override
+        public void fileFailed(String file, String reason) {
+            failures.add(file + ": " + reason);
+        }
+    }
+
+    private ResultStore scan(ScanOptions options, Set<String> words, Recorder recorder) throws Exception {
+        options.setJmxMonitor(false);
+        ForbiddenFinderScan scan = new ForbiddenFinderScan(root.resolve("in"), words, root.resolve("out"), options,
+                recorder);
+        scan.run();
+        return scan.getResults();
+    }
+
+    @Test
+    void everyEngineMasksOverlappingWords() throws Exception {
+        Path in = Files.createDirectories(root.resolve("in"));
+        Files.writeString(in.resolve("overlap.txt"), "x aa bb cc dd y\n");
+        Files.writeString(in.resolve("clean.txt"), "nothing here\n");
+
+        for (ScanEngine engine : ScanEngine.values()) {
+            ScanOptions options = new ScanOptions();
+            options.setScanEngine(engine);
+            Recorder recorder = new Recorder();
+            ResultStore results = scan(options, Set.of("aa bb", "cc", "bb cc dd"), recorder);
+
+            assertEquals(1, results.liveCount(), engine + " files found");
+            assertEquals(2, results.count(0), engine + " replacements");
+            assertTrue(recorder.failures.isEmpty(), engine + " failures: " + recorder.failures);
+            assertEquals("x ******* ******* dd y" + System.lineSeparator(),
+                    Files.readString(root.resolve("out").resolve("overlap.txt.replaced")), engine.toString());
+        }
+    }
+
+    @Test
+    void filesWithAByteOrderMarkAreDecodedWithItsCharset() throws Exception {
+        Path in = Files.createDirectories(root.resolve("in"));
+        List<Charset> charsets = List.of(StandardCharsets.UTF_8, StandardCharsets.UTF_16LE,
+                StandardCharsets.UTF_16BE, Charset.forName("UTF-32LE"), Charset.forName("UTF-32BE"));
+        for (Charset charset : charsets) {
+            Files.write(in.resolve(charset.name() + ".txt"), ("\uFEFFone bad word\nbad again\n").getBytes(charset));
+        }
+
+        for (ScanMode mode : ScanMode.values()) {
+            ScanOptions options = new ScanOptions();
+            options.setScanMode(mode);
+            Recorder recorder = new Recorder();
+            ResultStore results = scan(options, Set.of("bad"), recorder);
+
+            assertTrue(recorder.failures.isEmpty(), mode + " failures: " + recorder.failures);
+            assertEquals(charsets.size(), results.liveCount(), mode + " files found");
+            for (Charset charset : charsets) {
+                // Same encoding and BOM as the original
+                String expected = "\uFEFFone ******* word" + System.lineSeparator() + "******* again"
+                        + System.lineSeparator();
+                assertArrayEquals(expected.getBytes(charset),
+                        Files.readAllBytes(root.resolve("out").resolve(charset.name() + ".txt.replaced")));
+            }
+        }
+    }
+
+    @Test
+    void patchesHashTheSourceInTheScanPass() throws Exception {
+        Path in = Files.createDirectories(root.resolve("in"));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            text.append("line ").append(i).append(i % 7 == 0 ? " bad" : " fine").append('\n');
+        }
+        Files.writeString(in.resolve("big.txt"), text);
+
+        // Once whole, once as chunks whose hashes are combined
+        for (long chunkThreshold : new long[] { Long.MAX_VALUE, 1 }) {
+            ScanOptions options = new ScanOptions();
+            options.setOutputMode(OutputMode.PATCH_SIDECAR);
+            options.setChunkThreshold(chunkThreshold);
+            options.setChunkSize(16 * 1024);
+            scan(options, Set.of("bad"), new Recorder());
+
+            // rebuild() refuses a patch whose recorded hash does not match the source
+            Path rebuilt = root.resolve("rebuilt.txt");
+            PatchFile.rebuild(root.resolve("out").resolve("big.txt" + PatchFile.SUFFIX), null, rebuilt);
+            assertEquals(text.toString().replace(" bad", " *******"), Files.readString(rebuilt));
+        }
+    }
+
+    @Test
+    void archiveEntriesShareTheScanBudgetAndReportBrokenEntries() throws Exception {
+        Path in = Files.createDirectories(root.resolve("in"));
+        Path archive = in.resolve("bundle.zip");
+        Random random = new Random(11);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            for (String name : List.of("broken.txt", "a.txt", "b.txt", "c.txt")) {
+                zip.putNextEntry(new ZipEntry(name));
+                StringBuilder text = new StringBuilder("one bad word\n");
+                while (text.length() < 48 * 1024) {
+                    text.append((char) ('a' + random.nextInt(26)));
+                }
+                zip.write(text.toString().getBytes(StandardCharsets.US_ASCII));
+                zip.closeEntry();
+            }
+        }
+        // Garbage in place of the first entry's deflated data: that entry fails, the others do not
+        long compressed;
+        try (ZipFile zip = new ZipFile(archive.toFile())) {
+            compressed = zip.getEntry("broken.txt").getCompressedSize();
+        }
+        byte[] garbage = new byte[(int) compressed];
+        Arrays.fill(garbage, (byte) 0xFF); // an invalid deflate block type
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(garbage), 30 + "broken.txt".length()); // after the local header
+        }
+
+        for (ScanEngine engine : ScanEngine.values()) {
+            // The archive alone is bigger than the budget, so it must not take any of it
+            ScanOptions options = new ScanOptions();
+            options.setScanEngine(engine);
+            options.setScanArchives(true);
+            options.setMaxBytesInFlight(64 * 1024);
+            Recorder recorder = new Recorder();
+            ResultStore results = scan(options, Set.of("bad"), recorder);
+
+            assertEquals(3, results.liveCount(), engine + " entries found");
+            assertEquals(1, recorder.failures.size(), engine + " failures: " + recorder.failures);
+            assertTrue(recorder.failures.get(0).startsWith("bundle.zip!/broken.txt"), recorder.failures.get(0));
+        }
+    }
+
+    @Test
+    void pipelineMatchThreadsNeverWaitOnTheReadStageBudget() throws Exception {
+        Path in = Files.createDirectories(root.resolve("in"));
+        String text = "one bad word\n" + "filler ".repeat(4 * 1024);
+        for (int i = 0; i < 40; i++) {
+            Files.writeString(in.resolve("file" + i + ".txt"), text);
+        }
+        for (int i = 0; i < 4; i++) {
+            try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(in.resolve("bundle" + i + ".zip")))) {
+                for (String name : List.of("a.txt", "b.txt", "c.txt")) {
+                    zip.putNextEntry(new ZipEntry(name));
+                    zip.write(text.getBytes(StandardCharsets.US_ASCII));
+                    zip.closeEntry();
+                }
+            }
+        }
+
+        // Two loaded files fill the budget; the one match thread then meets an archive
+        ScanOptions options = new ScanOptions();
+        options.setScanEngine(ScanEngine.PIPELINE);
+        options.setScanArchives(true);
+        options.setMaxBytesInFlight(64 * 1024);
+        options.setMatchThreads(1);
+        options.setJmxMonitor(false);
+        ForbiddenFinderScan scan = new ForbiddenFinderScan(in, Set.of("bad"), root.resolve("out"), options,
+                new Recorder());
+        Thread runner = new Thread(() -> {
+            try {
+                scan.run();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        runner.start();
+        runner.join(30_000);
+        if (runner.isAlive()) {
+            scan.cancel();
+            runner.join();
+            fail("the pipeline stopped making progress");
+        }
+        assertEquals(40 + 4 * 3, scan.getResults().liveCount());
+    }
+
+    @Test
+    void emptyDirectoryReportIsNotMarkedFailed() throws Exception {
+        Files.createDirectories(root.resolve("in"));
+        scan(new ScanOptions(), Set.of("bad"), new Recorder());
+
+        try (Stream<Path> files = Files.list(root.resolve("out"))) {
+            Path report = files.filter(file -> file.getFileName().toString().startsWith(ReportWriter.PREFIX)
+                    && file.getFileName().toString().endsWith(".txt")).findFirst().orElseThrow();
+            assertTrue(Files.readString(report).contains("Status: Empty"), Files.readString(report));
+        }
+    }
+}
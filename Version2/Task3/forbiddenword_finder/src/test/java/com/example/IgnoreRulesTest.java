@@ -0,0 +1,51 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IgnoreRulesTest {
+
+    @TempDir
+    Path root;
+
+    @Test
+    void malformedPatternIsSkippedAndTheRestStillApplies() throws Exception {
+        Files.writeString(root.resolve(IgnoreRules.DIRECTORY_FILE), "*.log\n[[]\n[z-a]\nbuild/\n");
+        Files.createDirectories(root.resolve("build"));
+
+        IgnoreRules rules = new IgnoreRules(root, true);
+        assertTrue(rules.isIgnored(root.resolve("app.log"), false));
+        assertTrue(rules.isIgnored(root.resolve("build"), true));
+        assertFalse(rules.isIgnored(root.resolve("app.txt"), false));
+        assertFalse(rules.isIgnored(root.resolve("["), false));
+    }
+
+    @Test
+    void watchEventsReuseTheRulesUntilAnIgnoreFileChanges() throws Exception {
+        Path ignoreFile = root.resolve(IgnoreRules.DIRECTORY_FILE);
+        Files.writeString(ignoreFile, "*.log\n");
+        Path deep = Files.createDirectories(root.resolve("a").resolve("b"));
+        Files.writeString(deep.resolve(IgnoreRules.DIRECTORY_FILE), "*.tmp\n");
+
+        IgnoreRules rules = new IgnoreRules(root, true);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(rules.isIgnored(deep.resolve("event" + i + ".log"), false));
+            assertTrue(rules.isIgnored(deep.resolve("event" + i + ".tmp"), false));
+        }
+        assertEquals(2, rules.getIgnoreFiles());
+
+        Files.writeString(ignoreFile, "*.txt\n");
+        assertTrue(rules.isIgnored(deep.resolve("app.log"), false), "kept until the watcher reports the change");
+        rules.changed(ignoreFile);
+        assertFalse(rules.isIgnored(deep.resolve("app.log"), false));
+        assertTrue(rules.isIgnored(deep.resolve("app.txt"), false));
+        assertEquals(2, rules.getIgnoreFiles());
+    }
+}
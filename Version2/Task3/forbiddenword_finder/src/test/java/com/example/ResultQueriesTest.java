@@ -0,0 +1,24 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+
+import org.junit.jupiter.api.Test;
+
+class ResultQueriesTest {
+
+    private static final String SRC = File.separator + "root" + File.separator + "src";
+
+    @Test
+    void directoryPrefixMatchesWholeNamesOnly() {
+        assertTrue(ResultQueries.isUnder(SRC, SRC));
+        assertTrue(ResultQueries.isUnder(SRC + File.separator + "main", SRC));
+        assertTrue(ResultQueries.isUnder(SRC + File.separator + "main", SRC + File.separator));
+
+        assertFalse(ResultQueries.isUnder(SRC + "-old", SRC));
+        assertFalse(ResultQueries.isUnder(SRC + "2" + File.separator + "main", SRC));
+        assertFalse(ResultQueries.isUnder(File.separator + "root", SRC));
+    }
+}
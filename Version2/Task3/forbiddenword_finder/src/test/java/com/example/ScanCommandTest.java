@@ -0,0 +1,60 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScanCommandTest {
+
+    @TempDir
+    Path root;
+
+    private int execute(String... args) {
+        return ScanCommand.execute(args);
+    }
+
+    private Path tree(String content) throws Exception {
+        Path in = Files.createDirectories(root.resolve("in"));
+        Files.writeString(in.resolve("a.txt"), content);
+        Files.writeString(root.resolve("words.txt"), "bad\n");
+        return in;
+    }
+
+    @Test
+    void completedScanExitsZeroAndHitsOnlyWhenAsked() throws Exception {
+        Path in = tree("a bad line\n");
+        String words = root.resolve("words.txt").toString();
+        String results = root.resolve("results.txt").toString();
+        assertEquals(0, execute(in.toString(), words, root.resolve("out").toString(), "--results", results));
+        assertEquals(1, execute(in.toString(), words, root.resolve("out").toString(), "--results", results,
+                "--fail-on-hits"));
+
+        Files.writeString(in.resolve("a.txt"), "a clean line\n");
+        assertEquals(0, execute(in.toString(), words, root.resolve("out").toString(), "--results", results,
+                "--fail-on-hits"));
+    }
+
+    @Test
+    void badArgumentsExitTwo() throws Exception {
+        Path in = tree("a bad line\n");
+        String out = root.resolve("out").toString();
+        assertEquals(2, execute(in.toString(), root.resolve("words.txt").toString()));
+        assertEquals(2, execute(in.toString(), root.resolve("words.txt").toString(), out, "--engine", "NOPE"));
+        assertEquals(2, execute(in.toString(), root.resolve("missing.txt").toString(), out, "--fail-on-hits"));
+        // A directory cannot be opened as the results file
+        assertEquals(2, execute(in.toString(), root.resolve("words.txt").toString(), out, "--results",
+                root.toString(), "--fail-on-hits"));
+    }
+
+    @Test
+    void failedScanExitsThree() throws Exception {
+        tree("a bad line\n");
+        assertEquals(3, execute(root.resolve("missing").toString(), root.resolve("words.txt").toString(),
+                root.resolve("out").toString(), "--results", root.resolve("results.txt").toString(),
+                "--fail-on-hits"));
+    }
+}
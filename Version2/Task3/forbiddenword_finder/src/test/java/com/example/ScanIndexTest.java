@@ -0,0 +1,88 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ScanIndexTest {
+
+    private static final WordMatcher MATCHER = new WordMatcher(List.of("bad", "worse"));
+    private static final long SIZE = 120;
+    private static final long MODIFIED = 1_700_000_000_000L;
+
+    @TempDir
+    Path root;
+
+    @Test
+    void recordedResultsSurviveAReopen() throws Exception {
+        Path file = root.resolve("a.txt");
+        try (ScanIndex index = ScanIndex.open(root, MATCHER)) {
+            index.record(file, SIZE, MODIFIED, 42, MATCHER, new long[] { 2, 0 });
+        }
+
+        try (ScanIndex index = ScanIndex.open(root, MATCHER)) {
+            ScanIndex.Entry entry = index.lookup(file, SIZE, MODIFIED);
+            assertNotNull(entry);
+            assertEquals(2, entry.count);
+            assertArrayEquals(new String[] { "bad" }, entry.words);
+            assertArrayEquals(new long[] { 2 }, entry.wordCounts);
+            assertNull(index.lookup(file, SIZE + 1, MODIFIED), "size changed");
+        }
+    }
+
+    @Test
+    void truncatedLogKeepsTheCompleteRecords() throws Exception {
+        Path kept = root.resolve("kept.txt");
+        Path cut = root.resolve("cut.txt");
+        try (ScanIndex index = ScanIndex.open(root, MATCHER)) {
+            index.record(kept, SIZE, MODIFIED, 1, MATCHER, new long[] { 1, 0 });
+            index.record(cut, SIZE, MODIFIED, 2, MATCHER, new long[] { 0, 3 });
+        }
+        Path log = root.resolve(ScanIndex.FILE_NAME);
+        try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (ScanIndex index = ScanIndex.open(root, MATCHER)) {
+            assertNotNull(index.lookup(kept, SIZE, MODIFIED));
+            assertNull(index.lookup(cut, SIZE, MODIFIED));
+        }
+    }
+
+    @Test
+    void corruptedLogFallsBackToAnEmptyIndexAndIsRebuilt() throws Exception {
+        // The last record ends with its word count (int), one word id (int) and its hits (long)
+        for (int[] corruption : new int[][] { { 16, -1 }, { 16, Integer.MAX_VALUE }, { 12, 7 } }) {
+            Path file = root.resolve("a.txt");
+            Files.deleteIfExists(root.resolve(ScanIndex.FILE_NAME));
+            try (ScanIndex index = ScanIndex.open(root, MATCHER)) {
+                index.record(file, SIZE, MODIFIED, 42, MATCHER, new long[] { 2, 0 });
+            }
+            Path log = root.resolve(ScanIndex.FILE_NAME);
+            try (FileChannel channel = FileChannel.open(log, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.allocate(4).putInt(0, corruption[1]), channel.size() - corruption[0]);
+            }
+
+            try (ScanIndex index = ScanIndex.open(root, MATCHER)) {
+                assertNull(index.lookup(file, SIZE, MODIFIED));
+                index.record(file, SIZE, MODIFIED, 42, MATCHER, new long[] { 0, 1 });
+            }
+            try (ScanIndex index = ScanIndex.open(root, MATCHER)) {
+                ScanIndex.Entry entry = index.lookup(file, SIZE, MODIFIED);
+                assertNotNull(entry, "rebuilt index");
+                assertArrayEquals(new String[] { "worse" }, entry.words);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class WordMatcherTest {
+
+    private static String mask(WordMatcher matcher, String line, long[] hits) {
+        StringBuilder out = new StringBuilder();
+        matcher.maskLine(line, out, hits);
+        return out.toString();
+    }
+
+    /** Byte matches as "start-end" pairs, in the order the sink got them. */
+    private static List<String> byteMatches(WordMatcher matcher, String text, long[] hits) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+        List<String> matches = new ArrayList<>();
+        matcher.scanBytes(buffer, 0, buffer.limit(), hits, (start, end, word) -> matches.add(start + "-" + end));
+        return matches;
+    }
+
+    @Test
+    void masksWholeWordsIgnoringAsciiCase() {
+        WordMatcher matcher = new WordMatcher(List.of("bad"));
+        long[] hits = new long[1];
+        assertEquals("a ******* and *******, not badge", mask(matcher, "a bad and BAD, not badge", hits));
+        assertArrayEquals(new long[] { 2 }, hits);
+    }
+
+    @Test
+    void longerMatchStartingEarlierWins() {
+        WordMatcher matcher = new WordMatcher(List.of("bb", "aa bb"));
+        long[] hits = new long[2];
+        assertEquals("x ******* y", mask(matcher, "x aa bb y", hits));
+        assertArrayEquals(new long[] { 0, 1 }, hits);
+    }
+
+    @Test
+    void overlapNeverReachesBackIntoAFinalMatch() throws IOException {
+        // "bb cc dd" ends after "cc" is pending, but starts inside "aa bb", which is already final
+        WordMatcher matcher = new WordMatcher(List.of("aa bb", "cc", "bb cc dd"));
+        long[] hits = new long[3];
+        assertEquals("x ******* ******* dd y", mask(matcher, "x aa bb cc dd y", hits));
+        assertArrayEquals(new long[] { 1, 1, 0 }, hits);
+
+        long[] byteHits = new long[3];
+        assertEquals(List.of("2-7", "8-10"), byteMatches(matcher, "x aa bb cc dd y", byteHits));
+        assertArrayEquals(new long[] { 1, 1, 0 }, byteHits);
+    }
+
+    @Test
+    void byteScanTreatsTheRangeEdgesAsBoundaries() throws IOException {
+        WordMatcher matcher = new WordMatcher(List.of("word"));
+        ByteBuffer buffer = ByteBuffer.wrap("xwordx".getBytes(StandardCharsets.UTF_8));
+        long[] hits = new long[1];
+        assertEquals(1, matcher.scanBytes(buffer, 1, 5, hits, null));
+        assertEquals(0, matcher.scanBytes(buffer, 0, 6, null, null));
+    }
+}